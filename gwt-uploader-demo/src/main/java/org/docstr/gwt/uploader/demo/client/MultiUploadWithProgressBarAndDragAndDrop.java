@@ -173,7 +173,7 @@ public class MultiUploadWithProgressBarAndDragAndDrop implements EntryPoint, Upl
             cancelButtons.clear();
           }
 
-          uploader.addFilesToQueue(Uploader.getDroppedFiles(event.getNativeEvent()));
+          uploader.addDroppedFilesToQueue(event.getNativeEvent());
           event.preventDefault();
         }
       });
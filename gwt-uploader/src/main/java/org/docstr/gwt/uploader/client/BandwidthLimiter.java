@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+/**
+ * A token bucket which caps the rate at which the uploader sends bytes.  The bucket holds up to a
+ * second's worth of bytes and is refilled continuously at the configured rate.  Requests may
+ * start as long as the bucket isn't empty and take all of their bytes out of it at once, leaving
+ * the bucket in debt until enough time has passed to pay them back, so that the average rate
+ * stays within the limit even though a request can't be throttled once it has been sent.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class BandwidthLimiter {
+
+  private double bytesPerSecond;
+  private double tokens;
+  private double lastRefillTime = 0;
+
+  BandwidthLimiter(double bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+    this.tokens = bytesPerSecond;
+  }
+
+  double getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Change the rate of the bucket, keeping any debt already incurred.
+   */
+  void setBytesPerSecond(double bytesPerSecond, double now) {
+    refill(now);
+    this.bytesPerSecond = bytesPerSecond;
+    this.tokens = Math.min(this.tokens, bytesPerSecond);
+  }
+
+  /**
+   * Return true if a request may be started right now.
+   */
+  boolean hasTokens(double now) {
+    refill(now);
+    return this.tokens > 0;
+  }
+
+  /**
+   * Take the given number of bytes out of the bucket.
+   *
+   * @return The number of milliseconds until the bucket is no longer in debt, or 0 if it isn't.
+   */
+  double consume(double bytes, double now) {
+    refill(now);
+    this.tokens -= bytes;
+    return getDelay(now);
+  }
+
+  /**
+   * Return the number of milliseconds until the bucket is no longer in debt, or 0 if it isn't.
+   */
+  double getDelay(double now) {
+    refill(now);
+    return this.tokens > 0 ? 0 : Math.ceil(-this.tokens / this.bytesPerSecond * 1000) + 1;
+  }
+
+  /**
+   * Return the largest number of bytes worth sending in a single paced request, which keeps the
+   * bursts within about a second's worth of bytes.
+   */
+  double getMaxRequestSize() {
+    return Math.max(64 * 1024, this.bytesPerSecond);
+  }
+
+  private void refill(double now) {
+    if (this.lastRefillTime > 0) {
+      this.tokens = Math.min(this.bytesPerSecond,
+                             this.tokens + (now - this.lastRefillTime) / 1000
+                                           * this.bytesPerSecond);
+    }
+    this.lastRefillTime = now;
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Keeps track of the chunks of a single file while it is being uploaded in chunked mode.  Chunks
+ * are handed out in order of their offset within the file, but may be acknowledged by the server
+ * in any order when several of them are in flight at the same time.
+ * <p>
+ * When the upload fails, the chunks already accepted by the server are kept so that the next
+ * attempt (with the same upload id) only needs to send the chunks that were in flight or not yet
+ * started.  The chunks that were in flight are handed out again first, with their original part
+ * number, offset and length.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class ChunkedUpload {
+
+  // The limits of the S3 multipart upload API
+  static final double MIN_OBJECT_STORAGE_PART_SIZE = 5 * 1024 * 1024;
+  static final double MAX_OBJECT_STORAGE_PARTS = 10000;
+
+  private final File file;
+  private final double size;
+  private final String uploadId;
+
+  private double nextOffset = 0;
+  private int partCount = 0;
+  private double bytesAcknowledged = 0;
+
+  // Purposefully using concrete types here instead of a generic map to increase GWT performance
+  private HashMap<Integer, JavaScriptObject> requestsByPart =
+      new HashMap<Integer, JavaScriptObject>();
+  private HashMap<Integer, Double> bytesLoadedByPart = new HashMap<Integer, Double>();
+  private HashMap<Integer, Double> offsetsByPart = new HashMap<Integer, Double>();
+  private HashMap<Integer, Double> lengthsByPart = new HashMap<Integer, Double>();
+  private ArrayList<Integer> interruptedParts = new ArrayList<Integer>();
+
+  /**
+   * @param file     The file being uploaded.
+   * @param size     The number of bytes to upload (see {@link File#getUploadSize()}).
+   * @param uploadId The identifier shared by all chunks of the file.
+   */
+  ChunkedUpload(File file, double size, String uploadId) {
+    this.file = file;
+    this.size = size;
+    this.uploadId = uploadId;
+  }
+
+  /**
+   * Return the size of the parts a file is split into when it is uploaded straight to object
+   * storage: the chunk size, but no smaller than the minimum part size and large enough for the
+   * file to fit within the maximum number of parts.
+   *
+   * @param size      The number of bytes to upload.
+   * @param chunkSize The chunk size set on the uploader, or 0 if none was set.
+   */
+  static double getObjectStoragePartSize(double size, double chunkSize) {
+    double partSize = Math.max(chunkSize, MIN_OBJECT_STORAGE_PART_SIZE);
+    return Math.max(partSize, Math.ceil(size / MAX_OBJECT_STORAGE_PARTS));
+  }
+
+  /**
+   * Return the number of parts needed to upload the given number of bytes (at least one, so that
+   * an empty upload still has a part to complete).
+   */
+  static int getPartCount(double size, double partSize) {
+    return (int) Math.max(1, Math.ceil(size / partSize));
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  double getSize() {
+    return size;
+  }
+
+  String getUploadId() {
+    return uploadId;
+  }
+
+  /**
+   * Return the offset of the next chunk that still needs to be sent.
+   */
+  double getNextOffset() {
+    return interruptedParts.isEmpty() ? nextOffset : offsetsByPart.get(interruptedParts.get(0));
+  }
+
+  /**
+   * Return the number of bytes to send in the next chunk.  Chunks that were interrupted keep
+   * their original length, as the chunks after them have already been handed out.
+   *
+   * @param maxLength The preferred number of bytes to send in the next chunk.
+   */
+  double getNextLength(double maxLength) {
+    return interruptedParts.isEmpty() ? Math.min(maxLength, size - nextOffset)
+                                      : lengthsByPart.get(interruptedParts.get(0));
+  }
+
+  /**
+   * Return the number of chunks that have been handed out so far.
+   */
+  int getPartCount() {
+    return partCount;
+  }
+
+  boolean hasMoreChunks() {
+    return !interruptedParts.isEmpty() || nextOffset < size;
+  }
+
+  /**
+   * Reserve the next chunk of the file, returning its part number.
+   *
+   * @param length The number of bytes that will be sent as part of the chunk, as returned by
+   *               {@link #getNextLength(double)}.
+   */
+  int nextPart(double length) {
+    if (!interruptedParts.isEmpty()) {
+      return interruptedParts.remove(0);
+    }
+    offsetsByPart.put(partCount, nextOffset);
+    lengthsByPart.put(partCount, length);
+    nextOffset += length;
+    return partCount++;
+  }
+
+  void addRequest(int part, JavaScriptObject xmlHttpRequest) {
+    requestsByPart.put(part, xmlHttpRequest);
+  }
+
+  /**
+   * Stop tracking the request of the given part.
+   *
+   * @return 'true' if the part was still being tracked, or 'false' if it had already completed or
+   * been aborted.
+   */
+  boolean removeRequest(int part) {
+    bytesLoadedByPart.remove(part);
+    return requestsByPart.remove(part) != null;
+  }
+
+  int getRequestsInFlight() {
+    return requestsByPart.size();
+  }
+
+  void setBytesLoaded(int part, double bytesLoaded) {
+    bytesLoadedByPart.put(part, bytesLoaded);
+  }
+
+  /**
+   * Record that the server has accepted the given part.
+   */
+  void acknowledge(int part) {
+    Double length = lengthsByPart.remove(part);
+    offsetsByPart.remove(part);
+    removeRequest(part);
+    if (length != null) {
+      bytesAcknowledged += length;
+    }
+  }
+
+  /**
+   * Return the number of bytes accepted by the server, plus the bytes sent so far on the
+   * chunks that are still in flight.
+   */
+  double getBytesUploaded() {
+    double bytesUploaded = bytesAcknowledged;
+    for (Double bytesLoaded : bytesLoadedByPart.values()) {
+      bytesUploaded += bytesLoaded;
+    }
+    return bytesUploaded;
+  }
+
+  /**
+   * Return true once every byte of the file has been accepted by the server.
+   */
+  boolean isComplete() {
+    return bytesAcknowledged >= size;
+  }
+
+  /**
+   * Abort all of the requests still in flight.  The requests are no longer tracked once this
+   * method returns, so any events they fire as a result of being aborted can be ignored.  Every
+   * chunk that was handed out but not accepted by the server will be handed out again.
+   */
+  void abort() {
+    ArrayList<JavaScriptObject> requests = new ArrayList<JavaScriptObject>(requestsByPart.values());
+    requestsByPart.clear();
+    bytesLoadedByPart.clear();
+    interruptedParts = new ArrayList<Integer>(lengthsByPart.keySet());
+    Collections.sort(interruptedParts);
+    for (JavaScriptObject xmlHttpRequest : requests) {
+      nativeAbort(xmlHttpRequest);
+    }
+  }
+
+  private static native void nativeAbort(JavaScriptObject xmlHttpRequest) /*-{
+      xmlHttpRequest.abort();
+  }-*/;
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+/**
+ * An additive increase/multiplicative decrease (AIMD) controller which decides how many uploads
+ * (or chunks) the uploader keeps in flight at once.  The aggregate throughput of all uploads is
+ * sampled over fixed periods: as long as the throughput keeps improving the concurrency grows by
+ * one, while errors and stalls (progress events arriving much later than usual) cut it in half.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class ConcurrencyController {
+
+  private static final int SAMPLE_PERIOD = 2000;
+  private static final double IMPROVEMENT_THRESHOLD = 1.05;
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final double STALL_FACTOR = 4.0;
+  private static final int MIN_STALL_DURATION = 1000;
+
+  private final int maxConcurrency;
+  private int concurrency = 1;
+
+  private double sampleStartTime = 0;
+  private double sampleBytes = 0;
+  private double lastThroughput = 0;
+  private double averageProgressInterval = 0;
+  private double lastDecreaseTime = 0;
+
+  ConcurrencyController(int maxConcurrency) {
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+  }
+
+  int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Record the bytes reported by a progress event.
+   *
+   * @param bytes            The number of bytes uploaded since the previous progress event of the
+   *                         same file.
+   * @param progressInterval The number of milliseconds since the previous progress event of the
+   *                         same file.
+   * @param now              The current time in milliseconds.
+   * @param saturated        Whether all of the currently allowed upload slots are in use, as
+   *                         there is no point in allowing more uploads otherwise.
+   * @return 'true' if the concurrency was increased as a result.
+   */
+  boolean onProgress(double bytes, double progressInterval, double now, boolean saturated) {
+    if (this.averageProgressInterval > 0
+        && progressInterval > Math.max(MIN_STALL_DURATION,
+                                       this.averageProgressInterval * STALL_FACTOR)) {
+      onCongestion(now);
+    }
+    this.averageProgressInterval = this.averageProgressInterval > 0
+                                   ? this.averageProgressInterval * 0.8 + progressInterval * 0.2
+                                   : progressInterval;
+
+    if (this.sampleStartTime <= 0) {
+      this.sampleStartTime = now;
+    }
+    this.sampleBytes += Math.max(0, bytes);
+    if (now - this.sampleStartTime < SAMPLE_PERIOD) {
+      return false;
+    }
+
+    double throughput = this.sampleBytes * 1000 / (now - this.sampleStartTime);
+    this.sampleStartTime = now;
+    this.sampleBytes = 0;
+
+    boolean increased = false;
+    if (saturated && throughput > this.lastThroughput * IMPROVEMENT_THRESHOLD
+        && this.concurrency < this.maxConcurrency) {
+      this.concurrency++;
+      increased = true;
+    }
+    this.lastThroughput = throughput;
+    return increased;
+  }
+
+  /**
+   * Record a sign of congestion, such as a failed request, a 429/503 response or a stall.
+   * Several signals within the same sample period only decrease the concurrency once.
+   *
+   * @param now The current time in milliseconds.
+   */
+  void onCongestion(double now) {
+    if (now - this.lastDecreaseTime < SAMPLE_PERIOD) {
+      return;
+    }
+    this.lastDecreaseTime = now;
+    this.concurrency = Math.max(1, (int) (this.concurrency * DECREASE_FACTOR));
+
+    // Start probing again from the reduced level
+    this.lastThroughput = 0;
+    this.sampleStartTime = now;
+    this.sampleBytes = 0;
+  }
+}
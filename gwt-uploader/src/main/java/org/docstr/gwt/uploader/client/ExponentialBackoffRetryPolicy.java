@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.docstr.gwt.uploader.client.events.UploadErrorEvent;
+
+/**
+ * The default {@link RetryPolicy} implementation, which retries transient failures with an
+ * exponentially increasing delay.  The following failures are considered transient:
+ * <ul>
+ * <li>Network errors, where no response was received from the server at all</li>
+ * <li>Requests that exceeded the timeout set via {@link Uploader#setRequestTimeout(int)}</li>
+ * <li>HTTP 5xx responses, as well as 408 (Request Timeout) and 429 (Too Many Requests)</li>
+ * </ul>
+ * The delay before the n-th retry is <code>initialDelay * multiplier^(n - 1)</code>, capped at
+ * the maximum delay, from which a random amount of up to <code>jitter</code> (as a fraction of
+ * the delay) is then subtracted.  The random jitter keeps clients that failed at the same moment
+ * (e.g. during a backend outage) from all retrying at the same moment as well.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+  private int maxAttempts = 5;
+  private int initialDelay = 1000;
+  private int maxDelay = 60000;
+  private double multiplier = 2.0;
+  private double jitter = 0.5;
+
+  /**
+   * Set the maximum number of attempts to upload each file, including the first attempt.
+   *
+   * @param maxAttempts The maximum number of attempts per file (default: 5).
+   * @return A reference to this {@link ExponentialBackoffRetryPolicy} instance for convenient
+   * method chaining.
+   */
+  public ExponentialBackoffRetryPolicy setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  /**
+   * Set the delay before the first retry of a file.
+   *
+   * @param initialDelay The delay in milliseconds (default: 1000).
+   * @return A reference to this {@link ExponentialBackoffRetryPolicy} instance for convenient
+   * method chaining.
+   */
+  public ExponentialBackoffRetryPolicy setInitialDelay(int initialDelay) {
+    this.initialDelay = Math.max(0, initialDelay);
+    return this;
+  }
+
+  /**
+   * Set the upper bound of the delay between two attempts.
+   *
+   * @param maxDelay The maximum delay in milliseconds (default: 60000).
+   * @return A reference to this {@link ExponentialBackoffRetryPolicy} instance for convenient
+   * method chaining.
+   */
+  public ExponentialBackoffRetryPolicy setMaxDelay(int maxDelay) {
+    this.maxDelay = Math.max(0, maxDelay);
+    return this;
+  }
+
+  /**
+   * Set the factor by which the delay grows after each failed attempt.
+   *
+   * @param multiplier The growth factor of the delay (default: 2.0).
+   * @return A reference to this {@link ExponentialBackoffRetryPolicy} instance for convenient
+   * method chaining.
+   */
+  public ExponentialBackoffRetryPolicy setMultiplier(double multiplier) {
+    this.multiplier = Math.max(1.0, multiplier);
+    return this;
+  }
+
+  /**
+   * Set the fraction of the delay that may be randomly taken off each delay, where 0 disables the
+   * jitter and 1 picks a delay anywhere between 0 and the computed delay.
+   *
+   * @param jitter The jitter as a fraction between 0 and 1 (default: 0.5).
+   * @return A reference to this {@link ExponentialBackoffRetryPolicy} instance for convenient
+   * method chaining.
+   */
+  public ExponentialBackoffRetryPolicy setJitter(double jitter) {
+    this.jitter = Math.min(1.0, Math.max(0.0, jitter));
+    return this;
+  }
+
+  @Override
+  public int getRetryDelay(File file, int attempt, UploadErrorEvent.ErrorCode errorCode,
+                           int httpStatus) {
+    if (attempt >= this.maxAttempts || !isRetryable(errorCode, httpStatus)) {
+      return -1;
+    }
+    double delay = Math.min(this.maxDelay, this.initialDelay * Math.pow(this.multiplier, attempt - 1));
+    return (int) (delay - delay * this.jitter * Math.random());
+  }
+
+  /**
+   * Determine whether the given failure is worth retrying.  Subclasses may override this method
+   * in order to change which failures are considered transient.
+   *
+   * @param errorCode  The type of error that caused the upload to fail.
+   * @param httpStatus The HTTP status code returned by the server, or 0 if no response was
+   *                   received.
+   * @return 'true' if the failure is transient and the file should be attempted again.
+   */
+  protected boolean isRetryable(UploadErrorEvent.ErrorCode errorCode, int httpStatus) {
+    switch (errorCode) {
+      case UPLOAD_FAILED:
+      case IO_ERROR:
+        return true;
+      case HTTP_ERROR:
+        return httpStatus == 0 || httpStatus == 408 || httpStatus == 429 || httpStatus >= 500;
+      default:
+        return false;
+    }
+  }
+
+}
@@ -83,6 +83,16 @@ public final class File extends JavaScriptObject {
       return this.index;
   }-*/;
 
+  /**
+   * Return the priority of the file within the queue (see
+   * {@link Uploader#setFilePriority(String, int)}), which is 0 unless it has been changed.
+   *
+   * @return int
+   */
+  public native int getPriority() /*-{
+      return this.priority || 0;
+  }-*/;
+
   /**
    * Return the original name of the file being uploaded.
    *
@@ -101,6 +111,90 @@ public final class File extends JavaScriptObject {
     return (long) nativeGetSize();
   }
 
+  /**
+   * Return the number of bytes that are actually sent to the server for this file.  This is the
+   * same as {@link #getSize()}, unless the file's contents are compressed (see
+   * {@link Uploader#setCompression(String)}) or transformed (see
+   * {@link Uploader#setImageResize(int, double)}) before being uploaded.
+   *
+   * @return long
+   */
+  public long getUploadSize() {
+    return (long) nativeGetUploadSize();
+  }
+
+  /**
+   * Return the size of the image after it was downscaled and re-encoded before being uploaded (in
+   * bytes), or the same as {@link #getSize()} if the file wasn't transformed (see
+   * {@link Uploader#setImageResize(int, double)}).
+   *
+   * @return long
+   */
+  public long getTransformedSize() {
+    return (long) nativeGetTransformedSize();
+  }
+
+  /**
+   * Return the width (in pixels) the image was downscaled to before being uploaded, or -1 if the
+   * file wasn't transformed.
+   *
+   * @return int
+   */
+  public native int getTransformedWidth() /*-{
+      return this.transformedWidth || -1;
+  }-*/;
+
+  /**
+   * Return the height (in pixels) the image was downscaled to before being uploaded, or -1 if the
+   * file wasn't transformed.
+   *
+   * @return int
+   */
+  public native int getTransformedHeight() /*-{
+      return this.transformedHeight || -1;
+  }-*/;
+
+  /**
+   * Return the content encoding (e.g. "gzip") the file's contents were compressed with before
+   * being uploaded, or null if the file is uploaded as is.
+   *
+   * @return String
+   */
+  public native String getContentEncoding() /*-{
+      return this.contentEncoding || null;
+  }-*/;
+
+  /**
+   * Return the hex encoded SHA-256 hash of the file's contents, or null if it hasn't been
+   * computed (see {@link Uploader#setDeduplicationURL(String)}).
+   *
+   * @return String
+   */
+  public native String getContentHash() /*-{
+      return this.contentHash || null;
+  }-*/;
+
+  /**
+   * Return the path of the file relative to the folder it was selected from (e.g.
+   * "photos/2016/beach.jpg"), or null if the file was selected on its own.  The path is sent to
+   * the server along with the file as the <code>relative_path</code> parameter.
+   *
+   * @return String
+   */
+  public native String getRelativePath() /*-{
+      return this.relativePath || this.webkitRelativePath || null;
+  }-*/;
+
+  /**
+   * Return true if the file was completed without being uploaded, because the server already had
+   * a file with the same contents.
+   *
+   * @return boolean
+   */
+  public native boolean isDeduplicated() /*-{
+      return !!this.deduplicated;
+  }-*/;
+
   /**
    * Return the mime type of the file being uploaded.
    *
@@ -216,6 +310,15 @@ public final class File extends JavaScriptObject {
       return this.size ? this.size : 0.0;
   }-*/;
 
+  private native double nativeGetTransformedSize() /*-{
+      return this.transformedSize ? this.transformedSize : (this.size ? this.size : 0.0);
+  }-*/;
+
+  private native double nativeGetUploadSize() /*-{
+      var blob = this.uploadBlob || this;
+      return blob.size ? blob.size : 0.0;
+  }-*/;
+
   private native double nativeGetModificationDate() /*-{
       return this.modificationdate != null ? this.modificationdate.getTime() : 0;
   }-*/;
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The files which have been added to an {@link Uploader} and have not yet completed, in the order
+ * they were queued in.  Files are indexed by their id, so adding, looking up and removing a file
+ * take constant time regardless of how many files are queued.  The files which are still waiting
+ * to be uploaded are additionally kept in a binary heap ordered by the upload order (see
+ * {@link Uploader#setUploadOrder(Comparator)}), so finding the next file to upload takes
+ * logarithmic time for any order.
+ * <p>
+ * The queue returned by {@link Uploader#getFileQueue()} is a read-only view: files are added to it
+ * by the uploader as they are selected and removed once they complete (or are cancelled).
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class FileQueue implements Iterable<File> {
+
+  // Purposefully using a concrete type here instead of a generic map to increase GWT performance
+  private final LinkedHashMap<String, File> filesById = new LinkedHashMap<String, File>();
+
+  // The files waiting to be uploaded, as a binary heap in which each file's position is kept on
+  // the file itself
+  private final IndexedHeap<File> waitingFiles =
+      new IndexedHeap<File>(withSequence(UploadOrder.FIFO)) {
+        @Override
+        protected int getIndex(File file) {
+          return nativeGetHeapIndex(file);
+        }
+
+        @Override
+        protected void setIndex(File file, int index) {
+          nativeSetHeapIndex(file, index);
+        }
+      };
+  private double nextSequence = 0;
+
+  FileQueue() {
+  }
+
+  /**
+   * Return the number of files in the queue (including the ones being uploaded).
+   *
+   * @return int
+   */
+  public int size() {
+    return filesById.size();
+  }
+
+  public boolean isEmpty() {
+    return filesById.isEmpty();
+  }
+
+  /**
+   * Return the file with the given id, or null if no such file is queued.
+   *
+   * @param fileId The id of the file (as assigned when it was added to the queue).
+   * @return File
+   */
+  public File get(String fileId) {
+    return filesById.get(fileId);
+  }
+
+  public boolean contains(String fileId) {
+    return filesById.containsKey(fileId);
+  }
+
+  /**
+   * Return the file which has been in the queue the longest, or null if the queue is empty.
+   *
+   * @return File
+   */
+  public File getFirst() {
+    return filesById.isEmpty() ? null : filesById.values().iterator().next();
+  }
+
+  /**
+   * Iterate over the files in the order they were queued in.  The iterator doesn't support
+   * removing files.
+   */
+  @Override
+  public Iterator<File> iterator() {
+    final Iterator<File> files = filesById.values().iterator();
+    return new Iterator<File>() {
+      @Override
+      public boolean hasNext() {
+        return files.hasNext();
+      }
+
+      @Override
+      public File next() {
+        return files.next();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("The file queue is read-only");
+      }
+    };
+  }
+
+  void add(JavaScriptObject nativeFile) {
+    File file = nativeFile.cast();
+    remove(file.getId());
+    filesById.put(file.getId(), file);
+
+    // Files which compare as equal are uploaded in the order they were queued in
+    nativeSetSequence(file, nextSequence++);
+    waitingFiles.add(file);
+  }
+
+  /**
+   * Remove the file with the given id from the queue.
+   *
+   * @return The file which was removed, or null if no such file was queued.
+   */
+  File remove(String fileId) {
+    File file = filesById.remove(fileId);
+    if (file != null) {
+      removeWaiting(file);
+    }
+    return file;
+  }
+
+  /**
+   * Change the order in which the waiting files are uploaded.
+   */
+  void setOrder(Comparator<File> order) {
+    waitingFiles.setOrder(withSequence(order));
+  }
+
+  /**
+   * Return the waiting file which should be uploaded next, or null if no files are waiting.
+   */
+  File getNextWaiting() {
+    return waitingFiles.peek();
+  }
+
+  /**
+   * Stop considering the given file for upload (as it has been started), while keeping it in
+   * the queue.
+   */
+  void removeWaiting(File file) {
+    waitingFiles.remove(file);
+  }
+
+  /**
+   * Restore the position of the given file among the waiting files after something its order
+   * depends on (e.g. its priority) has changed.
+   */
+  void reorder(File file) {
+    waitingFiles.reorder(file);
+  }
+
+  private static Comparator<File> withSequence(final Comparator<File> order) {
+    return new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        int result = order.compare(a, b);
+        if (result != 0) {
+          return result;
+        }
+        double sequenceA = nativeGetSequence(a);
+        double sequenceB = nativeGetSequence(b);
+        return sequenceA < sequenceB ? -1 : (sequenceA > sequenceB ? 1 : 0);
+      }
+    };
+  }
+
+  private static native int nativeGetHeapIndex(File file) /*-{
+      return file.queueHeapIndex != null ? file.queueHeapIndex : -1;
+  }-*/;
+
+  private static native void nativeSetHeapIndex(File file, int index) /*-{
+      file.queueHeapIndex = index;
+  }-*/;
+
+  private static native double nativeGetSequence(File file) /*-{
+      return file.queueSequence || 0;
+  }-*/;
+
+  private static native void nativeSetSequence(File file, double sequence) /*-{
+      file.queueSequence = sequence;
+  }-*/;
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A small, bounded pool of dedicated Web Workers which perform the CPU heavy work on the files
+ * being uploaded (hashing their contents, downscaling images and compressing them), so that the
+ * main thread is left with nothing but handling events and progress.
+ * <p>
+ * Each worker is handed a single task at a time, while any further tasks wait in the pool's own
+ * queue until a worker becomes idle.  This way the amount of file data being read (and the
+ * number of results waiting to be picked up) stays bounded by the size of the pool, instead of
+ * every task being posted up front to workers whose message queues would grow without limit.  In
+ * browsers which can't run the workers (or when the pool has no workers at all), the same
+ * operations run asynchronously on the main thread instead.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class FileWorkerPool {
+
+  /**
+   * Receives the result of a task once it has been processed.
+   */
+  interface Callback {
+
+    void onSuccess(JavaScriptObject result);
+
+    void onFailure(String message);
+  }
+
+  private static final class Task {
+
+    private final int id;
+    private final String fileId;
+    private final JavaScriptObject file;
+    private final String operation;
+    private final JavaScriptObject options;
+    private final Callback callback;
+
+    private Task(int id, File file, String operation, JavaScriptObject options,
+                 Callback callback) {
+      this.id = id;
+      this.fileId = file.getId();
+      this.file = file;
+      this.operation = operation;
+      this.options = options;
+      this.callback = callback;
+    }
+  }
+
+  private final int maxWorkers;
+  private int workerCount = 0;
+  private int nextTaskId = 0;
+  private boolean workersUnavailable = false;
+
+  private JavaScriptObject workerURL = null;
+  private JavaScriptObject operations = null;
+
+  // Purposefully using concrete types here instead of generic collections to increase GWT
+  // performance
+  private LinkedList<Task> pendingTasks = new LinkedList<Task>();
+  private ArrayList<JavaScriptObject> idleWorkers = new ArrayList<JavaScriptObject>();
+  private HashMap<Integer, Task> runningTasksById = new HashMap<Integer, Task>();
+  private HashMap<Integer, JavaScriptObject> workersByTaskId =
+      new HashMap<Integer, JavaScriptObject>();
+
+  /**
+   * @param maxWorkers The maximum number of workers to start, or 0 to always run the tasks on
+   *                   the main thread.
+   */
+  FileWorkerPool(int maxWorkers) {
+    this.maxWorkers = Math.max(0, maxWorkers);
+  }
+
+  /**
+   * Return the default size of the pool, which leaves one of the device's cores to the main
+   * thread (up to a maximum of four workers).
+   */
+  static native int getDefaultPoolSize() /*-{
+      var cores = $wnd.navigator.hardwareConcurrency || 2;
+      return Math.max(1, Math.min(4, cores - 1));
+  }-*/;
+
+  /**
+   * Queue an operation to be performed on the given file.
+   *
+   * @param file      The file to process.
+   * @param operation Either "hash" (which results in the hex encoded SHA-256 hash of the file's
+   *                  contents as the <code>hash</code> property) or "prepare" (which downscales
+   *                  and/or compresses the file's contents, see {@link #createOptions}).
+   * @param options   The options of the operation, if any.
+   * @param callback  The callback which receives the result of the operation.
+   */
+  void submit(File file, String operation, JavaScriptObject options, Callback callback) {
+    this.pendingTasks.add(new Task(this.nextTaskId++, file, operation, options, callback));
+    drain();
+  }
+
+  /**
+   * Cancel all of the pending and running tasks of the given file.  The callbacks of cancelled
+   * tasks are not invoked.
+   */
+  void cancel(String fileId) {
+    for (Iterator<Task> iterator = this.pendingTasks.iterator(); iterator.hasNext(); ) {
+      if (iterator.next().fileId.equals(fileId)) {
+        iterator.remove();
+      }
+    }
+
+    // A worker can't be interrupted, so a worker busy with a cancelled task is thrown away
+    for (Task task : new ArrayList<Task>(this.runningTasksById.values())) {
+      if (task.fileId.equals(fileId)) {
+        this.runningTasksById.remove(task.id);
+        JavaScriptObject worker = this.workersByTaskId.remove(task.id);
+        if (worker != null) {
+          nativeTerminate(worker);
+          this.workerCount--;
+        }
+      }
+    }
+    drain();
+  }
+
+  private void drain() {
+    while (!this.pendingTasks.isEmpty()) {
+      JavaScriptObject worker = null;
+      if (!this.idleWorkers.isEmpty()) {
+        worker = this.idleWorkers.remove(this.idleWorkers.size() - 1);
+      } else if (this.workerCount < this.maxWorkers && !this.workersUnavailable) {
+        worker = createWorker();
+        if (worker == null) {
+          continue;
+        }
+      } else if (this.workerCount > 0) {
+        // Wait for one of the busy workers to become idle
+        return;
+      }
+
+      Task task = this.pendingTasks.removeFirst();
+      this.runningTasksById.put(task.id, task);
+      if (worker != null) {
+        this.workersByTaskId.put(task.id, worker);
+        nativePostTask(worker, task.id, task.file, task.operation, task.options);
+      } else {
+        if (this.operations == null) {
+          this.operations = nativeCreateMainThreadOperations();
+        }
+        nativeRunTask(this.operations, task.id, task.file, task.operation, task.options);
+      }
+    }
+  }
+
+  private JavaScriptObject createWorker() {
+    if (this.workerURL == null) {
+      this.workerURL = nativeCreateWorkerURL();
+    }
+    JavaScriptObject worker = this.workerURL != null ? nativeCreateWorker(this.workerURL) : null;
+    if (worker == null) {
+      // e.g. the browser doesn't support workers, or a content security policy forbids them
+      this.workersUnavailable = true;
+    } else {
+      this.workerCount++;
+    }
+    return worker;
+  }
+
+  private void taskCompleteCallback(JavaScriptObject worker, int taskId, JavaScriptObject result,
+                                    String errorMessage) {
+    if (worker != null) {
+      this.workersByTaskId.remove(taskId);
+      this.idleWorkers.add(worker);
+    }
+    Task task = this.runningTasksById.remove(taskId);
+    try {
+      if (task != null) {
+        if (errorMessage != null) {
+          task.callback.onFailure(errorMessage);
+        } else {
+          task.callback.onSuccess(result);
+        }
+      }
+    } finally {
+      drain();
+    }
+  }
+
+  private void workerErrorCallback(JavaScriptObject worker, String errorMessage) {
+    // Fail whatever the worker was busy with, and replace it with a new worker next time
+    nativeTerminate(worker);
+    if (this.idleWorkers.remove(worker)) {
+      this.workerCount--;
+    }
+    for (Integer taskId : new ArrayList<Integer>(this.workersByTaskId.keySet())) {
+      if (this.workersByTaskId.get(taskId) == worker) {
+        this.workersByTaskId.remove(taskId);
+        this.workerCount--;
+        taskCompleteCallback(null, taskId, null, errorMessage);
+      }
+    }
+  }
+
+  /**
+   * Create the options of the "prepare" operation.
+   *
+   * @param maxDimension The maximum width and height of images, or 0 to leave images as is.
+   * @param quality      The quality to re-encode lossy images at.
+   * @param imageType    The mime type to re-encode images to, or null to keep the same type.
+   * @param compression  The CompressionStream format to compress the contents with, or null.
+   */
+  static native JavaScriptObject createOptions(int maxDimension, double quality,
+                                               String imageType, String compression) /*-{
+      return {
+          maxDimension: maxDimension,
+          quality: quality,
+          imageType: imageType,
+          compression: compression
+      };
+  }-*/;
+
+  private native void nativePostTask(JavaScriptObject worker, int taskId, JavaScriptObject file,
+                                     String operation, JavaScriptObject options) /*-{
+      worker.postMessage({id: taskId, file: file, operation: operation, options: options});
+  }-*/;
+
+  private native void nativeRunTask(JavaScriptObject operations, int taskId,
+                                    JavaScriptObject file, String operation,
+                                    JavaScriptObject options) /*-{
+      var self = this;
+      operations[operation](file, options).then(function (result) {
+          self.@org.docstr.gwt.uploader.client.FileWorkerPool::taskCompleteCallback(Lcom/google/gwt/core/client/JavaScriptObject;ILcom/google/gwt/core/client/JavaScriptObject;Ljava/lang/String;)(
+              null, taskId, result, null);
+      }, function (e) {
+          self.@org.docstr.gwt.uploader.client.FileWorkerPool::taskCompleteCallback(Lcom/google/gwt/core/client/JavaScriptObject;ILcom/google/gwt/core/client/JavaScriptObject;Ljava/lang/String;)(
+              null, taskId, null, String(e));
+      });
+  }-*/;
+
+  private native JavaScriptObject nativeCreateWorker(JavaScriptObject url) /*-{
+      var self = this;
+      var worker;
+      try {
+          worker = new $wnd.Worker(url);
+      } catch (e) {
+          return null;
+      }
+      worker.addEventListener('message', function (e) {
+          self.@org.docstr.gwt.uploader.client.FileWorkerPool::taskCompleteCallback(Lcom/google/gwt/core/client/JavaScriptObject;ILcom/google/gwt/core/client/JavaScriptObject;Ljava/lang/String;)(
+              worker, e.data.id, e.data.result || null, e.data.error || null);
+      }, false);
+      worker.addEventListener('error', function (e) {
+          e.preventDefault();
+          self.@org.docstr.gwt.uploader.client.FileWorkerPool::workerErrorCallback(Lcom/google/gwt/core/client/JavaScriptObject;Ljava/lang/String;)(
+              worker, e.message || 'Worker failed');
+      }, false);
+      return worker;
+  }-*/;
+
+  private static native void nativeTerminate(JavaScriptObject worker) /*-{
+      worker.terminate();
+  }-*/;
+
+  private static native JavaScriptObject nativeCreateWorkerURL() /*-{
+      if (typeof $wnd.Worker === 'undefined' || typeof $wnd.Blob === 'undefined'
+          || !$wnd.URL || !$wnd.URL.createObjectURL) {
+          return null;
+      }
+      var factory = @org.docstr.gwt.uploader.client.FileWorkerPool::nativeGetOperationsFactory()();
+      var source = 'var operations = (' + factory.toString() + ')(self);\n'
+          + 'self.onmessage = function (e) {\n'
+          + '  var task = e.data;\n'
+          + '  operations[task.operation](task.file, task.options).then(function (result) {\n'
+          + '    self.postMessage({id: task.id, result: result});\n'
+          + '  }, function (error) {\n'
+          + '    self.postMessage({id: task.id, error: String(error)});\n'
+          + '  });\n'
+          + '};\n';
+      return $wnd.URL.createObjectURL(new $wnd.Blob([source], {type: 'application/javascript'}));
+  }-*/;
+
+  private static native JavaScriptObject nativeCreateMainThreadOperations() /*-{
+      var factory = @org.docstr.gwt.uploader.client.FileWorkerPool::nativeGetOperationsFactory()();
+      return factory($wnd);
+  }-*/;
+
+  // The factory's source is copied into the workers, so it mustn't reference anything outside of
+  // its own body other than the global scope it's given
+  private static native JavaScriptObject nativeGetOperationsFactory() /*-{
+      return function (global) {
+          var createSha256 = function () {
+              var k = new Int32Array([
+                0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4,
+                0xab1c5ed5, 0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe,
+                0x9bdc06a7, 0xc19bf174, 0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f,
+                0x4a7484aa, 0x5cb0a9dc, 0x76f988da, 0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
+                0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967, 0x27b70a85, 0x2e1b2138, 0x4d2c6dfc,
+                0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85, 0xa2bfe8a1, 0xa81a664b,
+                0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070, 0x19a4c116,
+                0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+                0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7,
+                0xc67178f2]);
+              var h = new Int32Array([
+                0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab,
+                0x5be0cd19]);
+              var w = new Int32Array(64);
+              var pending = new Uint8Array(64);
+              var pendingLength = 0;
+              var length = 0;
+
+              var compress = function (bytes, offset) {
+                  var i;
+                  for (i = 0; i < 16; i++, offset += 4) {
+                      w[i] = (bytes[offset] << 24) | (bytes[offset + 1] << 16)
+                          | (bytes[offset + 2] << 8) | bytes[offset + 3];
+                  }
+                  for (i = 16; i < 64; i++) {
+                      var x = w[i - 15];
+                      var y = w[i - 2];
+                      var s0 = ((x >>> 7) | (x << 25)) ^ ((x >>> 18) | (x << 14)) ^ (x >>> 3);
+                      var s1 = ((y >>> 17) | (y << 15)) ^ ((y >>> 19) | (y << 13)) ^ (y >>> 10);
+                      w[i] = (w[i - 16] + s0 + w[i - 7] + s1) | 0;
+                  }
+                  var a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+                  for (i = 0; i < 64; i++) {
+                      var t1 = (hh + (((e >>> 6) | (e << 26)) ^ ((e >>> 11) | (e << 21))
+                          ^ ((e >>> 25) | (e << 7))) + ((e & f) ^ (~e & g)) + k[i] + w[i]) | 0;
+                      var t2 = ((((a >>> 2) | (a << 30)) ^ ((a >>> 13) | (a << 19))
+                          ^ ((a >>> 22) | (a << 10))) + ((a & b) ^ (a & c) ^ (b & c))) | 0;
+                      hh = g;
+                      g = f;
+                      f = e;
+                      e = (d + t1) | 0;
+                      d = c;
+                      c = b;
+                      b = a;
+                      a = (t1 + t2) | 0;
+                  }
+                  h[0] = (h[0] + a) | 0;
+                  h[1] = (h[1] + b) | 0;
+                  h[2] = (h[2] + c) | 0;
+                  h[3] = (h[3] + d) | 0;
+                  h[4] = (h[4] + e) | 0;
+                  h[5] = (h[5] + f) | 0;
+                  h[6] = (h[6] + g) | 0;
+                  h[7] = (h[7] + hh) | 0;
+              };
+
+              return {
+                  update: function (bytes) {
+                      var i = 0;
+                      length += bytes.length;
+                      if (pendingLength > 0) {
+                          while (pendingLength < 64 && i < bytes.length) {
+                              pending[pendingLength++] = bytes[i++];
+                          }
+                          if (pendingLength < 64) {
+                              return;
+                          }
+                          compress(pending, 0);
+                          pendingLength = 0;
+                      }
+                      for (; i + 64 <= bytes.length; i += 64) {
+                          compress(bytes, i);
+                      }
+                      while (i < bytes.length) {
+                          pending[pendingLength++] = bytes[i++];
+                      }
+                  },
+                  digest: function () {
+                      pending[pendingLength++] = 0x80;
+                      if (pendingLength > 56) {
+                          pending.fill(0, pendingLength);
+                          compress(pending, 0);
+                          pendingLength = 0;
+                      }
+                      pending.fill(0, pendingLength);
+                      var bitsHigh = Math.floor(length / 0x20000000);
+                      var bitsLow = (length % 0x20000000) * 8;
+                      pending[56] = bitsHigh >>> 24;
+                      pending[57] = bitsHigh >>> 16;
+                      pending[58] = bitsHigh >>> 8;
+                      pending[59] = bitsHigh;
+                      pending[60] = bitsLow >>> 24;
+                      pending[61] = bitsLow >>> 16;
+                      pending[62] = bitsLow >>> 8;
+                      pending[63] = bitsLow;
+                      compress(pending, 0);
+                      var hex = '';
+                      for (var i = 0; i < 8; i++) {
+                          hex += ('0000000' + (h[i] >>> 0).toString(16)).slice(-8);
+                      }
+                      return hex;
+                  }
+              };
+          };
+
+          // Hash the file in slices, so that only a single slice is held in memory at a time
+          var hash = function (file) {
+              var sha256 = createSha256();
+              var offset = 0;
+              var next = function () {
+                  if (offset >= file.size) {
+                      return {hash: sha256.digest()};
+                  }
+                  var slice = file.slice(offset, offset + 4194304);
+                  offset += 4194304;
+                  return slice.arrayBuffer().then(function (buffer) {
+                      sha256.update(new Uint8Array(buffer));
+                      return next();
+                  });
+              };
+              return global.Promise.resolve().then(next);
+          };
+
+          var prepare = function (file, options) {
+              var result = {blob: null};
+              var prepared = global.Promise.resolve(file);
+
+              if (options.maxDimension > 0) {
+                  prepared = prepared.then(function (blob) {
+                      return global.createImageBitmap(blob).then(function (bitmap) {
+                          var scale = Math.min(1, options.maxDimension
+                              / Math.max(bitmap.width, bitmap.height));
+                          if (scale == 1) {
+                              // The image already fits, so don't spend any time re-encoding it
+                              bitmap.close();
+                              return blob;
+                          }
+                          var width = Math.max(1, Math.round(bitmap.width * scale));
+                          var height = Math.max(1, Math.round(bitmap.height * scale));
+                          var canvas = new global.OffscreenCanvas(width, height);
+                          canvas.getContext('2d').drawImage(bitmap, 0, 0, width, height);
+                          bitmap.close();
+                          return canvas.convertToBlob({
+                              type: options.imageType || blob.type,
+                              quality: options.quality
+                          }).then(function (transformed) {
+                              result.transformedSize = transformed.size;
+                              result.transformedWidth = width;
+                              result.transformedHeight = height;
+                              return transformed;
+                          });
+                      });
+                  });
+              }
+
+              if (options.compression) {
+                  prepared = prepared.then(function (blob) {
+                      var compressed = blob.stream()
+                          .pipeThrough(new global.CompressionStream(options.compression));
+                      return new global.Response(compressed).blob().then(function (blob) {
+                          result.contentEncoding = options.compression;
+                          return blob;
+                      });
+                  });
+              }
+
+              return prepared.then(function (blob) {
+                  if (blob !== file) {
+                      result.blob = blob;
+                  }
+                  return result;
+              });
+          };
+
+          return {hash: hash, prepare: prepare};
+      };
+  }-*/;
+}
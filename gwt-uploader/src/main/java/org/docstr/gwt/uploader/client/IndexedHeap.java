@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * A binary heap which lets any of its items be removed, or moved after its order has changed, in
+ * logarithmic time.  Rather than looking items up, the heap keeps the position of each item on
+ * the item itself (via {@link #getIndex(Object)} and {@link #setIndex(Object, int)}), which allows
+ * items that are JavaScript objects to be tracked without a separate map.
+ *
+ * @author delight.wjk@gmail.com
+ */
+abstract class IndexedHeap<T> {
+
+  private final ArrayList<T> items = new ArrayList<T>();
+  private Comparator<T> order;
+
+  IndexedHeap(Comparator<T> order) {
+    this.order = order;
+  }
+
+  /**
+   * Return the position of the item within the heap, as last set via
+   * {@link #setIndex(Object, int)}, or -1 if it has never been set.
+   */
+  protected abstract int getIndex(T item);
+
+  protected abstract void setIndex(T item, int index);
+
+  int size() {
+    return items.size();
+  }
+
+  boolean isEmpty() {
+    return items.isEmpty();
+  }
+
+  boolean contains(T item) {
+    int index = getIndex(item);
+    return index >= 0 && index < items.size() && items.get(index) == item;
+  }
+
+  void add(T item) {
+    setIndex(item, items.size());
+    items.add(item);
+    siftUp(items.size() - 1);
+  }
+
+  /**
+   * Return the first item according to the order, or null if the heap is empty.
+   */
+  T peek() {
+    return items.isEmpty() ? null : items.get(0);
+  }
+
+  /**
+   * Remove the given item from the heap.
+   *
+   * @return 'true' if the item was in the heap.
+   */
+  boolean remove(T item) {
+    if (!contains(item)) {
+      return false;
+    }
+    int index = getIndex(item);
+    setIndex(item, -1);
+    T last = items.remove(items.size() - 1);
+    if (last != item) {
+      items.set(index, last);
+      setIndex(last, index);
+      reorder(last);
+    }
+    return true;
+  }
+
+  /**
+   * Restore the position of the given item after something its order depends on has changed.
+   */
+  void reorder(T item) {
+    if (contains(item)) {
+      siftDown(getIndex(item));
+      siftUp(getIndex(item));
+    }
+  }
+
+  /**
+   * Change the order of the heap, rebuilding it in linear time.
+   */
+  void setOrder(Comparator<T> order) {
+    this.order = order;
+    for (int i = items.size() / 2 - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+  }
+
+  private void siftUp(int index) {
+    T item = items.get(index);
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      T parentItem = items.get(parent);
+      if (order.compare(item, parentItem) >= 0) {
+        break;
+      }
+      items.set(index, parentItem);
+      setIndex(parentItem, index);
+      index = parent;
+    }
+    items.set(index, item);
+    setIndex(item, index);
+  }
+
+  private void siftDown(int index) {
+    T item = items.get(index);
+    int size = items.size();
+    while (true) {
+      int child = index * 2 + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && order.compare(items.get(child + 1), items.get(child)) < 0) {
+        child++;
+      }
+      T childItem = items.get(child);
+      if (order.compare(childItem, item) >= 0) {
+        break;
+      }
+      items.set(index, childItem);
+      setIndex(childItem, index);
+      index = child;
+    }
+    items.set(index, item);
+    setIndex(item, index);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+/**
+ * Works out how much of a file the server holds during a resumable (tus) upload, based on the
+ * <code>Upload-Offset</code> header returned by the server.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class ResumableOffsets {
+
+  private ResumableOffsets() {
+  }
+
+  /**
+   * Parse the value of an <code>Upload-Offset</code> header.
+   *
+   * @param uploadOffset The header value, which may be null if the header was missing (or not
+   *                     exposed to the browser due to CORS).
+   * @return The offset, or -1 if the header was missing or not a valid offset.
+   */
+  static double parseOffset(String uploadOffset) {
+    if (uploadOffset == null) {
+      return -1;
+    }
+    try {
+      double offset = Double.parseDouble(uploadOffset.trim());
+      return offset >= 0 ? offset : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Return the offset the next PATCH request should start from once the server has accepted a
+   * chunk.  If the server did not report its new offset the chunk is assumed to have been stored
+   * in full, so the upload carries on right after it rather than being treated as complete.
+   *
+   * @param uploadOffset The <code>Upload-Offset</code> header of the response, if any.
+   * @param sentOffset   The offset the chunk was sent from.
+   * @param sentLength   The number of bytes sent in the chunk.
+   */
+  static double getConfirmedOffset(String uploadOffset, double sentOffset, double sentLength) {
+    double offset = parseOffset(uploadOffset);
+    return offset >= 0 ? offset : sentOffset + sentLength;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.docstr.gwt.uploader.client.events.UploadErrorEvent;
+
+/**
+ * An interface that can be used to decide whether (and when) a file that failed to upload should
+ * be returned to the queue and attempted again.  A policy can be registered via the
+ * {@link Uploader#setRetryPolicy(RetryPolicy)} method, e.g.
+ * <pre><code>
+ * uploader.setRetryPolicy(new ExponentialBackoffRetryPolicy()
+ *     .setMaxAttempts(5)
+ *     .setInitialDelay(1000)
+ *     .setMaxDelay(60000));
+ * </code></pre>
+ * See {@link ExponentialBackoffRetryPolicy} for the default implementation.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface RetryPolicy {
+
+  /**
+   * This method is invoked each time an upload fails (excluding files that were cancelled) in
+   * order to determine how long the uploader should wait before returning the file to the queue.
+   *
+   * @param file       The file that failed to upload.
+   * @param attempt    The number of attempts made to upload the file so far (starting at 1).
+   * @param errorCode  The type of error that caused the upload to fail.
+   * @param httpStatus The HTTP status code returned by the server, or 0 if the request failed
+   *                   before a response was received (e.g. a network error or a timeout).
+   * @return The number of milliseconds to wait before the file is returned to the queue, or a
+   * negative value if the file should not be attempted again.
+   */
+  int getRetryDelay(File file, int attempt, UploadErrorEvent.ErrorCode errorCode, int httpStatus);
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+/**
+ * The speed measurements of a single file, from which its moving average speed is calculated.
+ * Only the most recent measurements are kept (in a ring buffer), and the mean and variance of the
+ * window are updated incrementally (Welford's method, adapted to a sliding window), so recording
+ * a measurement takes constant time and memory no matter how long the upload runs for.
+ * <p>
+ * As with the SWFUpload Speed plug-in, measurements more than two standard deviations away from
+ * the mean are treated as outliers and left out of the average once enough of them have been
+ * collected.  Each measurement is judged against the window as it is recorded, rather than the
+ * whole window being re-standardized every time.  Alternatively an exponentially weighted moving
+ * average of the measurements which aren't outliers can be used.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class SpeedStatistics {
+
+  static final int DEFAULT_WINDOW_SIZE = 64;
+
+  private static final int MIN_SAMPLES = 8;
+  private static final double DEVIATION_RANGE = 2.0;
+
+  private final double[] samples;
+  private final boolean[] inliers;
+  private final double smoothingFactor;
+  private int count = 0;
+  private int next = 0;
+
+  private double mean = 0;
+  private double m2 = 0;
+  private double inlierSum = 0;
+  private int inlierCount = 0;
+  private double ewma = -1;
+
+  /**
+   * @param windowSize      The number of the most recent measurements to keep.
+   * @param smoothingFactor The weight given to each new measurement by the exponentially weighted
+   *                        moving average (between 0 and 1), or 0 to average the measurements in
+   *                        the window instead.
+   */
+  SpeedStatistics(int windowSize, double smoothingFactor) {
+    this.samples = new double[Math.max(MIN_SAMPLES, windowSize)];
+    this.inliers = new boolean[this.samples.length];
+    this.smoothingFactor = smoothingFactor;
+  }
+
+  void add(double speed) {
+    // Judge the measurement against the window before it is added
+    boolean inlier = count < MIN_SAMPLES
+                     || Math.abs(speed - mean) <= DEVIATION_RANGE * getStandardDeviation();
+
+    if (count < samples.length) {
+      count++;
+      double delta = speed - mean;
+      mean += delta / count;
+      m2 += delta * (speed - mean);
+    } else {
+      // Replace the oldest measurement in the window
+      double oldest = samples[next];
+      double oldMean = mean;
+      mean += (speed - oldest) / count;
+      m2 += (speed - oldest) * (speed - mean + oldest - oldMean);
+      if (inliers[next]) {
+        inlierSum -= oldest;
+        inlierCount--;
+      }
+    }
+    samples[next] = speed;
+    inliers[next] = inlier;
+    next = (next + 1) % samples.length;
+
+    if (inlier) {
+      inlierSum += speed;
+      inlierCount++;
+      ewma = ewma < 0 ? speed : ewma + smoothingFactor * (speed - ewma);
+    }
+  }
+
+  double getStandardDeviation() {
+    return count > 0 ? Math.sqrt(Math.max(0, m2 / count)) : 0;
+  }
+
+  /**
+   * Return the average of the measurements, excluding outliers.
+   */
+  double getMovingAverage() {
+    if (smoothingFactor > 0) {
+      return Math.max(0, ewma);
+    }
+    return inlierCount > 0 ? inlierSum / inlierCount : 0;
+  }
+}
@@ -36,7 +36,8 @@ public final class Stats extends JavaScriptObject {
   }
 
   /**
-   * Return a 1 or 0 indicating if a file upload is currently in progress.
+   * Return the number of file uploads currently in progress.  Unless the uploader has been
+   * configured via {@link Uploader#setMaxConcurrentUploads(int)} this will be 1 or 0.
    *
    * @return int
    */
@@ -44,6 +45,17 @@ public final class Stats extends JavaScriptObject {
       return (this && this.in_progress) || 0;
   }-*/;
 
+  /**
+   * Return the number of uploads (or chunks of the same file) that the uploader currently allows
+   * to be in flight at once.  Unless adaptive concurrency has been enabled via
+   * {@link Uploader#setAdaptiveConcurrency(boolean)} this reflects the configured limits.
+   *
+   * @return int
+   */
+  public native int getConcurrency() /*-{
+      return (this && this.concurrency) || 0;
+  }-*/;
+
   /**
    * Return the number of files currently in the queue.
    *
@@ -80,6 +92,58 @@ public final class Stats extends JavaScriptObject {
       return (this && this.upload_cancelled) || 0;
   }-*/;
 
+  /**
+   * Return the number of bytes that didn't need to be uploaded because the server already had
+   * files with the same contents (see {@link Uploader#setDeduplicationURL(String)}).
+   *
+   * @return double
+   */
+  public native double getBytesSaved() /*-{
+      return (this && this.bytes_saved) || 0;
+  }-*/;
+
+  /**
+   * Return the total size in bytes of the files added to the queue since it was last empty,
+   * including the ones which have already been uploaded (but not the ones which were cancelled
+   * or failed, or which didn't need to be uploaded, see {@link #getBytesSaved()}).
+   *
+   * @return double
+   */
+  public native double getBytesQueued() /*-{
+      return (this && this.bytes_queued) || 0;
+  }-*/;
+
+  /**
+   * Return the number of bytes of the files counted by {@link #getBytesQueued()} that have been
+   * uploaded so far.
+   *
+   * @return double
+   */
+  public native double getBytesUploaded() /*-{
+      return (this && this.bytes_uploaded) || 0;
+  }-*/;
+
+  /**
+   * Return the combined speed of all of the uploads in progress, in bits per second.  The speed
+   * is sampled every second, and decays towards 0 while the uploads make no progress.
+   *
+   * @return double
+   */
+  public native double getCurrentSpeed() /*-{
+      return (this && this.current_speed) || 0;
+  }-*/;
+
+  /**
+   * Return the estimated number of seconds until all of the files counted by
+   * {@link #getBytesQueued()} have been uploaded, based on the current speed (or 0 if no progress
+   * has been made for a while, so that no estimate can be given).
+   *
+   * @return double
+   */
+  public native double getTimeRemaining() /*-{
+      return (this && this.time_remaining) || 0;
+  }-*/;
+
   /**
    * Return the number of files that caused the {@link FileQueueErrorHandler}
    * to be fired.
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+/**
+ * The parts of the tar format (see
+ * <a href="https://pubs.opengroup.org/onlinepubs/9699919799/utilities/pax.html">pax</a>) which
+ * the archives created in the archive upload mode depend on, kept apart from the code which
+ * assembles the archives so that they can be checked on their own.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class TarFormat {
+
+  static final int BLOCK_SIZE = 512;
+  static final int MAX_NAME_LENGTH = 100;
+
+  // The largest size which fits into the 11 octal digits of a ustar header (8 GB)
+  static final double MAX_USTAR_SIZE = 8589934592d;
+
+  private TarFormat() {
+  }
+
+  /**
+   * Return the number of zero bytes needed to pad the given number of bytes to a whole block.
+   */
+  static double getPadding(double size) {
+    return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+  }
+
+  /**
+   * Format a numeric header field as zero padded octal digits followed by a NUL, taking up the
+   * given length in total.
+   */
+  static String toOctal(double value, int length) {
+    StringBuilder digits = new StringBuilder(Long.toOctalString((long) Math.floor(value)));
+    while (digits.length() < length - 1) {
+      digits.insert(0, '0');
+    }
+    return digits.append('\0').toString();
+  }
+
+  /**
+   * Return true if the path can't be stored in the name field of a ustar header, either because
+   * it's too long or because it isn't plain ASCII.
+   */
+  static boolean needsExtendedPath(String path) {
+    int length = getUtf8Length(path);
+    return length > MAX_NAME_LENGTH || length != path.length();
+  }
+
+  static boolean needsExtendedSize(double size) {
+    return size >= MAX_USTAR_SIZE;
+  }
+
+  /**
+   * Create a pax extended header record, i.e. <code>"%d %s=%s\n"</code> where the leading number
+   * is the length of the whole record in bytes, including its own digits.
+   */
+  static String createRecord(String key, String value) {
+    int length = getUtf8Length(" " + key + "=" + value + "\n");
+    int digits = String.valueOf(length).length();
+    while (String.valueOf(length + digits).length() != digits) {
+      digits++;
+    }
+    return (length + digits) + " " + key + "=" + value + "\n";
+  }
+
+  static int getUtf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                 && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import java.util.Comparator;
+
+/**
+ * The built in orders in which queued files can be uploaded, which can be passed to the
+ * {@link Uploader#setUploadOrder(Comparator)} method.  Any other comparator of files can be used
+ * as well, e.g.
+ * <pre><code>
+ * uploader.setUploadOrder(new Comparator&lt;File&gt;() {
+ *   public int compare(File a, File b) {
+ *     return a.getName().compareTo(b.getName());
+ *   }
+ * });
+ * </code></pre>
+ * Files which compare as equal are always uploaded in the order they were queued in.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class UploadOrder {
+
+  /**
+   * Upload the files in the order they were queued in (the default).
+   */
+  public static final Comparator<File> FIFO = new Comparator<File>() {
+    @Override
+    public int compare(File a, File b) {
+      return 0;
+    }
+  };
+
+  /**
+   * Upload the smallest files first, so that a single large file doesn't hold up many small ones.
+   */
+  public static final Comparator<File> SMALLEST_FIRST = new Comparator<File>() {
+    @Override
+    public int compare(File a, File b) {
+      return a.getSize() < b.getSize() ? -1 : (a.getSize() > b.getSize() ? 1 : 0);
+    }
+  };
+
+  /**
+   * Upload the files with the highest priority first (see
+   * {@link Uploader#setFilePriority(String, int)}).
+   */
+  public static final Comparator<File> PRIORITY = new Comparator<File>() {
+    @Override
+    public int compare(File a, File b) {
+      return b.getPriority() < a.getPriority() ? -1 : (b.getPriority() > a.getPriority() ? 1 : 0);
+    }
+  };
+
+  private UploadOrder() {
+  }
+}
@@ -16,10 +16,11 @@
 
 package org.docstr.gwt.uploader.client;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.JsArray;
-import com.google.gwt.core.client.JsArrayNumber;
+import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.dom.client.DivElement;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.InputElement;
@@ -40,6 +41,7 @@ import com.google.gwt.event.dom.client.MouseUpEvent;
 import com.google.gwt.event.dom.client.MouseUpHandler;
 import com.google.gwt.json.client.JSONObject;
 import com.google.gwt.user.client.Element;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.AbsolutePanel;
 import com.google.gwt.user.client.ui.FileUpload;
 import com.google.gwt.user.client.ui.Label;
@@ -52,6 +54,8 @@ import org.docstr.gwt.uploader.client.events.FileQueueErrorEvent;
 import org.docstr.gwt.uploader.client.events.FileQueueErrorHandler;
 import org.docstr.gwt.uploader.client.events.FileQueuedEvent;
 import org.docstr.gwt.uploader.client.events.FileQueuedHandler;
+import org.docstr.gwt.uploader.client.events.QueueProgressEvent;
+import org.docstr.gwt.uploader.client.events.QueueProgressHandler;
 import org.docstr.gwt.uploader.client.events.UploadCompleteEvent;
 import org.docstr.gwt.uploader.client.events.UploadCompleteHandler;
 import org.docstr.gwt.uploader.client.events.UploadErrorEvent;
@@ -64,7 +68,10 @@ import org.docstr.gwt.uploader.client.events.UploadSuccessEvent;
 import org.docstr.gwt.uploader.client.events.UploadSuccessHandler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * The main GWT widget that can be constructed and then configured in order to add an uploader
@@ -115,6 +122,11 @@ public class Uploader extends AbsolutePanel {
   private static final String UPLOAD_ERRORS = "upload_errors";
   private static final String FILES_QEUED = "files_queued";
   private static final String IN_PROGRESS = "in_progress";
+  private static final String CONCURRENCY = "concurrency";
+  private static final String BYTES_QUEUED = "bytes_queued";
+  private static final String BYTES_UPLOADED = "bytes_uploaded";
+  private static final String CURRENT_SPEED = "current_speed";
+  private static final String TIME_REMAINING = "time_remaining";
 
   /**
    * An enumeration of supported button action types, which can be passed to the
@@ -149,6 +161,36 @@ public class Uploader extends AbsolutePanel {
     }
   }
 
+  /**
+   * An enumeration of the places the file's metadata can be sent in when the raw upload mode has
+   * been enabled, which can be passed to the
+   * {@link Uploader#setRawUpload(String, MetadataLocation)} method.
+   */
+  public enum MetadataLocation {
+
+    /**
+     * Send the metadata as request headers, e.g. "X-File-Name" for the file's name and
+     * "X-Param-[name]" for each of the post params.
+     */
+    HEADERS(-1),
+
+    /**
+     * Send the metadata as query string parameters appended to the upload URL, e.g. "file_name"
+     * for the file's name and the post params under their own names.
+     */
+    QUERY_STRING(-2);
+
+    private MetadataLocation(int optionValue) {
+      this.optionValue = optionValue;
+    }
+
+    private final int optionValue;
+
+    public int toInt() {
+      return this.optionValue;
+    }
+  }
+
   /**
    * An enumeration of supported button cursor types, which can be passed to the
    * {@link Uploader#setButtonCursor(Cursor)} method.  The button cursor
@@ -301,6 +343,44 @@ public class Uploader extends AbsolutePanel {
     return this;
   }
 
+  private RetryPolicy retryPolicy = null;
+
+  /**
+   * Set the policy used to decide whether a file that failed to upload should be attempted again.
+   * When a retry policy is set it takes precedence over the {@link #setRequeueOnError(boolean)}
+   * option: instead of returning the file to the queue straight away, the uploader waits for the
+   * delay returned by the policy, then returns the file to the queue and restarts the upload
+   * automatically.  Once the policy gives up on a file it is discarded as usual.
+   * <p>
+   * As with the requeue_on_error option, all the events associated with each failed attempt are
+   * still fired.  A file that is waiting to be retried is not in the queue, but can still be
+   * cancelled via the {@link #cancelUpload(String, boolean)} method.
+   *
+   * @param retryPolicy The policy to use (for example an {@link ExponentialBackoffRetryPolicy}),
+   *                    or null to disable automatic retries (default: null).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+  private int requestTimeout = 0;
+
+  /**
+   * Convenience method for setting the maximum number of milliseconds that each upload request
+   * may take.  Requests that take longer are aborted and reported via the
+   * {@link UploadErrorHandler} with the {@link UploadErrorEvent.ErrorCode#IO_ERROR} error code.
+   * When uploading in chunked mode the timeout applies to each chunk separately.
+   *
+   * @param requestTimeout The request timeout in milliseconds, or 0 for no timeout (default: 0).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setRequestTimeout(int requestTimeout) {
+    this.requestTimeout = Math.max(0, requestTimeout);
+    return this;
+  }
+
   private long[] httpSuccess;
 
   /**
@@ -782,6 +862,21 @@ public class Uploader extends AbsolutePanel {
     return this;
   }
 
+  private QueueProgressHandler queueProgressHandler;
+
+  /**
+   * Set a callback handler that will be invoked after each uploader progress event with the
+   * combined progress of all of the files in the queue.
+   *
+   * @param queueProgressHandler The handler that should be invoked whenever a queue progress
+   *                             event occurs.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setQueueProgressHandler(QueueProgressHandler queueProgressHandler) {
+    this.queueProgressHandler = queueProgressHandler;
+    return this;
+  }
+
   private UploadProgressHandler uploadProgressHandler;
 
   /**
@@ -824,268 +919,2871 @@ public class Uploader extends AbsolutePanel {
     return this;
   }
 
-  // The current XMLHttpRequest in progress (if any), which we'll need a reference to in case the
-  // user attempts to cancel an in progress upload.
-  private JavaScriptObject lastXMLHttpRequest = null;
+  private int maxConcurrentUploads = 1;
 
   /**
-   * Cause the first file in the queue to start the uploader process.
+   * Convenience method for setting the maximum number of files that the component will upload
+   * at the same time.  By default only a single file is uploaded at a time, and the next file in
+   * the queue is only started once the previous one has completed.  Setting a higher value allows
+   * the {@link #startUpload()} method to keep several XMLHttpRequests in flight at once, which can
+   * dramatically improve the throughput when uploading many small files (particularly to servers
+   * that support HTTP/2).
+   * <p>
+   * Note that each call to {@link #startUpload()} will start as many queued files as needed to
+   * fill the available upload slots, so the common pattern of calling {@link #startUpload()}
+   * from within an {@link UploadCompleteHandler} continues to work as expected.
+   *
+   * @param maxConcurrentUploads The maximum number of simultaneous uploads (default: 1).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
    */
-  public void startUpload() {
-    if (this.uploadURL == null) {
-      throw new IllegalStateException(
-          "The 'startUpload()' method was invoked before the uploader URL was provided.  "
-          + "Please call the 'setUploadURL' first."
-      );
-    }
-
-    if (this.nativeFilesQueued.size() > 0) {
-      JavaScriptObject nativeFile = this.nativeFilesQueued.get(0);
-
-      // Initialize properties on Start
-      nativeSetProperty(nativeFile, "startTime", System.currentTimeMillis());
-      nativeSetProperty(nativeFile, "timeSinceLastEvent", System.currentTimeMillis());
-
-      //need to keep our global stats up to date manually
-      nativeSetProperty(getStats(), IN_PROGRESS, 1);
+  public Uploader setMaxConcurrentUploads(int maxConcurrentUploads) {
+    this.maxConcurrentUploads = Math.max(1, maxConcurrentUploads);
+    return this;
+  }
 
-      //we need to fire it manually for the Ajax/XMLHttpRequest Level 2 case
-      nativeUpdateFileProperties(nativeFile, File.Status.IN_PROGRESS.toInt());
-      if (this.uploadStartHandler != null) {
-        this.uploadStartHandler.onUploadStart(new UploadStartEvent(nativeFile.<File>cast()));
-      }
+  private boolean adaptiveConcurrency = false;
+  private ConcurrencyController concurrencyController;
 
-      // Let any registered progress handlers know that we're starting at the beginning
-      uploadProgressEventCallback(nativeFile.<File>cast(), 0.0,
-                                  nativeFile.<File>cast().getSize());
+  /**
+   * Convenience method for letting the uploader tune how many uploads it keeps in flight at once,
+   * rather than always using the fixed limits set via {@link #setMaxConcurrentUploads(int)} and
+   * {@link #setMaxConcurrentChunks(int)}.  In adaptive mode the uploader starts with a single
+   * upload in flight, and then follows an additive increase/multiplicative decrease scheme based
+   * on the aggregate upload throughput:
+   * <ul>
+   * <li>While the throughput keeps improving, one more upload (or chunk) is allowed in flight.</li>
+   * <li>Upload errors (including 429 and 503 responses and timeouts) and stalls, where progress
+   * events stop arriving for much longer than usual, halve the number of uploads in flight.</li>
+   * </ul>
+   * The configured limits act as the upper bounds of the adaptive concurrency, which is
+   * available via {@link Stats#getConcurrency()}.
+   *
+   * @param adaptiveConcurrency Whether the number of uploads in flight should be tuned
+   *                            automatically (default: false).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+    this.adaptiveConcurrency = adaptiveConcurrency;
+    this.concurrencyController = null;
+    return this;
+  }
 
-      this.lastXMLHttpRequest =
-          nativeStartAjaxUpload(nativeFile, this.ajaxUploadURL != null ? this.ajaxUploadURL : this.uploadURL,
-                                this.filePostName != null ? this.filePostName : "Filedata",
-                                this.postParams != null ? this.postParams.getJavaScriptObject() : null,
-                                this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null
-          );
+  private int getConcurrentUploadsLimit() {
+    if (this.concurrencyController != null) {
+      return Math.min(this.maxConcurrentUploads, this.concurrencyController.getConcurrency());
     }
+    return this.maxConcurrentUploads;
   }
 
-  // See: https://developer.mozilla.org/en/Using_files_from_web_applications
-  private native JavaScriptObject nativeStartAjaxUpload(JavaScriptObject file, String url,
-                                                        String filePostName,
-                                                        JavaScriptObject postParams,
-                                                        JavaScriptObject httpHeaders) /*-{
-
-      var self = this;
-      var xhr = new XMLHttpRequest();
-
-      // Setup the event handlers we'll need to let the consuming application know what's going on
-      xhr.upload.addEventListener('progress', function (e) {
-          return self.@org.docstr.gwt.uploader.client.Uploader::uploadProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;DD)(
-              file,
-              e.loaded,
-              e.total);
-      }, false);
-      xhr.addEventListener('load', function () {
-          return self.@org.docstr.gwt.uploader.client.Uploader::uploadSuccessEventCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;Ljava/lang/String;)(
-              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
-                  file,
-                  -4     // File.Status.COMPLETE
-              ),
-              xhr.status + "",
-              xhr.responseText
-          )
-      }, false);
-      xhr.addEventListener('error', function () {
-          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
-              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
-                  file,
-                  -3      // File.Status.ERROR
-              ),
-              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
-              xhr.responseText
-          )
-      }, false);
-      xhr.addEventListener('abort', function () {
-          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
-              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
-                  file,
-                  -5      // File.Status.CANCELLED
-              ),
-              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
-              "Upload Aborted"
-          )
-      }, false);
-
-      xhr.open('POST', url, true);
-      
-      // Inject any http headers
-      if (httpHeaders != null) {
-          for (var key in httpHeaders) {
-              xhr.setRequestHeader(key, httpHeaders[key]);
-          }
-      }
-      
-      var formData = new FormData();
-      formData.append(filePostName, file);
+  private int getConcurrentChunksLimit() {
+    if (this.concurrencyController != null) {
+      return Math.min(this.maxConcurrentChunks, this.concurrencyController.getConcurrency());
+    }
+    return this.maxConcurrentChunks;
+  }
 
-      // Append on any post params
-      if (postParams != null) {
-          for (var key in postParams) {
-              formData.append(key, postParams[key]);
-          }
-      }
+  private String archiveName = null;
 
-      // Kick off the multipart/form-data upload
-      xhr.send(formData);
+  // The number of file selections and dropped folders whose files are still being queued, and
+  // whether an upload was requested (in archive mode) while they were
+  private int selectionsQueueing = 0;
+  private boolean archiveStartPending = false;
 
-      return xhr;
-  }-*/;
+  // The archives which the files packed into them belong to, keyed by the id of the packed file
+  private HashMap<String, JavaScriptObject>
+      nativeArchivesByEntryId =
+      new HashMap<String, JavaScriptObject>();
 
   /**
-   * Cancel the file upload for a specific file and remove from the queue.
+   * Convenience method for enabling the archive upload mode of the component, in which all of the
+   * files in the queue are packed into a single tar archive when {@link #startUpload()} is
+   * invoked, and the archive is then uploaded in their place (as a single file, using whichever
+   * transport has been configured, e.g. in chunks via {@link #setChunkSize(long)}).  The archive
+   * is assembled from references to the queued files rather than from their contents, so the
+   * files are only read as the archive is being sent and the archive is never held in memory.
+   * Each entry of the archive is named after the relative path of the file within the folder it
+   * was selected from (or the file's name), using pax extended headers for long or non ASCII
+   * names and files of 8 GB or more.
+   * <p>
+   * The files packed into the archive keep firing their own events: the upload start, upload
+   * success, upload error and upload complete events of the archive are fired for each of its
+   * files, while its upload progress is mapped back onto the files according to where they are
+   * stored within the archive.  Cancelling any one of the files cancels the whole archive.
+   * <p>
+   * If {@link #startUpload()} is invoked while a selection of files is still being queued (see
+   * {@link #setIncrementalQueueing(int, boolean)} and {@link #addDroppedFilesToQueue(NativeEvent)}),
+   * the files are only packed and uploaded once the last of them has been queued, so that each
+   * selection ends up in a single archive.  Files already packed into an archive are never packed
+   * again.
    *
-   * @param fileId            The fileId to cancel
-   * @param triggerErrorEvent if true, an uploadError event will be issued
+   * @param archiveName The file name of the archive (e.g. "dataset.tar"), or null to upload the
+   *                    queued files individually (default: null).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
    */
-  public void cancelUpload(String fileId, boolean triggerErrorEvent) {
-      JavaScriptObject nativeFile = this.nativeFilesQueuedById.get(fileId);
-      if (nativeFile != null) {
+  public Uploader setArchiveUpload(String archiveName) {
+    this.archiveName = archiveName;
+    return this;
+  }
 
-        boolean cancelledActiveUpload = false;
+  private void packQueuedFiles() {
+    ArrayList<JavaScriptObject> nativeFiles = new ArrayList<JavaScriptObject>();
+    for (File nativeFile : this.fileQueue) {
+      if (nativeFile.getStatus() == File.Status.QUEUED
+          && nativeGetArchiveEntries(nativeFile) == null) {
+        nativeFiles.add(nativeFile);
+      }
+    }
+    if (nativeFiles.isEmpty()) {
+      return;
+    }
+    Collections.sort(nativeFiles, new Comparator<JavaScriptObject>() {
+      @Override
+      public int compare(JavaScriptObject a, JavaScriptObject b) {
+        return uploadOrder.compare(a.<File>cast(), b.<File>cast());
+      }
+    });
 
-        // If the file being cancelled was currently in the process of being uploaded, then cancel
-        // the current XMLHttpRequest as well
-        if (this.nativeFilesQueued.size() > 0 && this.lastXMLHttpRequest != null) {
-          final File currentFile = this.nativeFilesQueued.get(0).cast();
-          if (nativeFile.<File>cast().getId().equals(currentFile.getId())
-              && currentFile.getStatus() == File.Status.IN_PROGRESS) {
-            try {
-              cancelledActiveUpload = true;
-              nativeAbortXMLHttpRequest(this.lastXMLHttpRequest);
-            } catch (Throwable t) {
-              // Purposefully ignoring any problems that may occur when aborting the XMLHttpRequest
-              GWT.log(t.getMessage());
-            }
-          }
-        }
+    JsArray<File> entries = JavaScriptObject.createArray().cast();
+    for (JavaScriptObject nativeFile : nativeFiles) {
+      this.fileQueue.remove(nativeFile.<File>cast().getId());
+      entries.push(nativeFile.<File>cast());
+    }
 
-        nativeUpdateFileProperties(nativeFile, File.Status.CANCELLED.toInt());
+    JavaScriptObject archive = nativeCreateTarArchive(entries, this.archiveName);
+    nativeSetProperty(archive, "id", getNextFileId());
+    for (int i = 0; i < entries.length(); i++) {
+      this.nativeArchivesByEntryId.put(entries.get(i).getId(), archive);
+    }
+    addFileToQueue(archive);
+  }
 
-        // Keep the global stats up to date
-        nativeSetProperty(getStats(), "upload_cancelled", getStats().getUploadsCancelled() + 1);
+  private static native JsArray<File> nativeGetArchiveEntries(JavaScriptObject file) /*-{
+      return file.archiveEntries || null;
+  }-*/;
 
-        if (triggerErrorEvent) {
-          // CPD-OFF
-          nativeSetProperty(getStats(), UPLOAD_ERRORS, getStats().getUploadErrors() + 1);
-          // CPD-ON
-          if (this.uploadErrorHandler != null) {
-            this.uploadErrorHandler.onUploadError(
-                new UploadErrorEvent(nativeFile.<File>cast(),
-                                     UploadErrorEvent.ErrorCode.FILE_CANCELLED
-                                         .toInt(), "File Cancelled", null
-                )
-            );
+  // See: https://pubs.opengroup.org/onlinepubs/9699919799/utilities/pax.html
+  private static native JavaScriptObject nativeCreateTarArchive(JsArray<File> entries,
+                                                                String name) /*-{
+      var encoder = new $wnd.TextEncoder();
+      var octal = function (value, length) {
+          return @org.docstr.gwt.uploader.client.TarFormat::toOctal(DI)(value, length);
+      };
+      var createHeader = function (name, size, mtime, type) {
+          var header = new Uint8Array(512);
+          var write = function (offset, value) {
+              header.set(typeof value == 'string' ? encoder.encode(value) : value, offset);
+          };
+          write(0, name);
+          write(100, '0000644\0');
+          write(108, '0000000\0');
+          write(116, '0000000\0');
+          write(124, @org.docstr.gwt.uploader.client.TarFormat::needsExtendedSize(D)(size)
+              ? octal(0, 12) : octal(size, 12));
+          write(136, octal(mtime, 12));
+          write(148, '        ');
+          write(156, type);
+          write(257, 'ustar\0');
+          write(263, '00');
+          var checksum = 0;
+          for (var i = 0; i < 512; i++) {
+              checksum += header[i];
+          }
+          write(148, octal(checksum, 7) + ' ');
+          return header;
+      };
+      var padding = function (size) {
+          return new Uint8Array(@org.docstr.gwt.uploader.client.TarFormat::getPadding(D)(size));
+      };
+      var record = function (key, value) {
+          return @org.docstr.gwt.uploader.client.TarFormat::createRecord(Ljava/lang/String;Ljava/lang/String;)(
+              key, String(value));
+      };
+
+      var parts = [];
+      var offset = 0;
+      for (var i = 0; i < entries.length; i++) {
+          var file = entries[i];
+          var path = file.relativePath || file.webkitRelativePath || file.name;
+          var mtime = (file.lastModified || Date.now()) / 1000;
+
+          // Use an extended header for anything which doesn't fit into the ustar header itself
+          var extended = '';
+          if (@org.docstr.gwt.uploader.client.TarFormat::needsExtendedPath(Ljava/lang/String;)(path)) {
+              extended += record('path', path);
+          }
+          if (@org.docstr.gwt.uploader.client.TarFormat::needsExtendedSize(D)(file.size)) {
+              extended += record('size', file.size);
+          }
+          if (extended) {
+              var extendedBytes = encoder.encode(extended);
+              parts.push(createHeader('PaxHeader/' + i, extendedBytes.length, mtime, 'x'),
+                  extendedBytes, padding(extendedBytes.length));
+              offset += 512 + extendedBytes.length + padding(extendedBytes.length).length;
+              path = 'file' + i;
           }
-        }
 
-        // If we just cancelled the upload that was in progress then we need to explicitly invoke
-        // the complete handler after the file cancellation (in order to let the next potential
-        // upload continue)
-        if (cancelledActiveUpload) {
-          uploadCompleteEventCallback(nativeFile.<File>cast());
-        } else {
-          // If we're not cancelling the file upload that was in progress, then we need to handle
-          // pulling it out of the internal queue and statistics on our own
-          this.nativeFilesQueued.remove(nativeFile);
-          this.nativeFilesQueuedById.remove(nativeFile.<File>cast().getId());
-          nativeSetProperty(getStats(), FILES_QEUED, this.nativeFilesQueued.size());
-          nativeSetProperty(getStats(), IN_PROGRESS, 0);
-        }
+          parts.push(createHeader(path, file.size, mtime, '0'));
+          offset += 512;
+          file.archiveOffset = offset;
+          file.archived = true;
+          parts.push(file, padding(file.size));
+          offset += file.size + padding(file.size).length;
       }
-  }
+      parts.push(new Uint8Array(1024));
 
-  private static native void nativeAbortXMLHttpRequest(JavaScriptObject xmlHttpRequest) /*-{
-      xmlHttpRequest.abort();
+      var archive = new $wnd.File(parts, name, {type: 'application/x-tar'});
+      archive.archiveEntries = entries;
+      return archive;
   }-*/;
 
-  /**
-   * Cancel the first file in the queue.
-   */
-  public void cancelUpload() {
-      if (this.nativeFilesQueued.size() > 0) {
-        cancelUpload(this.nativeFilesQueued.get(0).<File>cast().getId());
-      }
-  }
+  private long batchMaxFileSize = 0;
+  private int batchMaxFiles = 0;
+  private long batchMaxSize = 0;
 
   /**
-   * Cancel the the file with the supplied id. An uploadError event will be
-   * issued.
+   * Convenience method for enabling the batch upload mode of the component, in which many small
+   * files are uploaded together in a single multipart request (with one part per file) rather
+   * than each of them paying for a request of their own.  Each batch is filled with the next
+   * files of the queue for as long as they're no larger than the given file size, up to the given
+   * number of files and total size.  The file parts of a batch all use the file post name, and
+   * the request additionally carries a <code>batch_size</code> post param holding the number of
+   * files in the batch.
+   * <p>
+   * The server is expected to respond with a JSON array holding the result of each of the files
+   * (in the same order as the parts of the request), as objects with the <code>status</code> code
+   * and the <code>data</code> of the file, e.g.
+   * <code>[{"status": 200, "data": "ok"}, {"status": 415, "data": "Unsupported type"}]</code>.
+   * Each file then fires its own upload success (or upload error) and upload complete events,
+   * just like files uploaded one at a time.  Batched files are sent as is, without being
+   * deduplicated, resized or compressed first.
    *
-   * @param fileId The fileId to cancel
+   * @param maxFileSize  The size of the largest file (in bytes) which is uploaded as part of a
+   *                     batch.
+   * @param maxFiles     The maximum number of files in a single batch, or 0 to disable the batch
+   *                     upload mode (default: 0).
+   * @param maxBatchSize The maximum total size (in bytes) of the files in a single batch.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
    */
-  public void cancelUpload(String fileId) {
-      cancelUpload(fileId, true);
+  public Uploader setBatchUpload(long maxFileSize, int maxFiles, long maxBatchSize) {
+    this.batchMaxFileSize = maxFileSize;
+    this.batchMaxFiles = maxFiles;
+    this.batchMaxSize = maxBatchSize;
+    return this;
   }
 
+  private Comparator<File> uploadOrder = UploadOrder.FIFO;
+
   /**
-   * Cancel the first file in the queue.
+   * Convenience method for setting the order in which the queued files are uploaded.  By default
+   * files are uploaded in the order they were queued in, whereas e.g.
+   * {@link UploadOrder#SMALLEST_FIRST} prevents a single large file from holding up many small
+   * ones and {@link UploadOrder#PRIORITY} uploads the files in the order of the priorities set via
+   * {@link #setFilePriority(String, int)}.  The order only affects which file is started next, so
+   * changing it doesn't interrupt the uploads already in progress.
    *
-   * @param triggerErrorEvent if true, an uploadError event will be issued
+   * @param uploadOrder One of the orders of {@link UploadOrder}, or any other comparator of
+   *                    files, or null to upload the files in the order they were queued in
+   *                    (default: {@link UploadOrder#FIFO}).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
    */
-  public void cancelUpload(boolean triggerErrorEvent) {
-      if (this.nativeFilesQueued.size() > 0) {
-        cancelUpload(this.nativeFilesQueued.get(0).<File>cast().getId(), triggerErrorEvent);
-      }
+  public Uploader setUploadOrder(Comparator<File> uploadOrder) {
+    this.uploadOrder = uploadOrder != null ? uploadOrder : UploadOrder.FIFO;
+    this.fileQueue.setOrder(this.uploadOrder);
+    return this;
   }
 
   /**
-   * Returns true if the browser appears to support an HTML5 style upload (via the XMLHttpRequest
-   * Level 2 API).
+   * Set the priority of a file in the queue, which decides when the file is uploaded if the
+   * upload order has been set to {@link UploadOrder#PRIORITY} (files with a higher priority are
+   * uploaded first).  All files start out with a priority of 0, so e.g. a file the user is
+   * waiting on can be moved ahead of the rest of the queue by giving it a priority of 1.
    * <p>
-   * Logic adapted from:
-   * http://blog.new-bamboo.co.uk/2012/01/10/ridiculously-simple-ajax-uploads-with-formdata
+   * Only files which are still waiting in the queue are affected.  The call is ignored if no file
+   * with the given id is queued (e.g. it has already completed or been packed into an archive, see
+   * {@link #setArchiveUpload(String)}), while a file which has already started keeps uploading
+   * and its new priority only applies if it is returned to the queue after failing.
    *
-   * @return 'true' if an HTML5 style upload can be used otherwise false
+   * @param fileId   The id of the file (as assigned when it was added to the queue).
+   * @param priority The new priority of the file.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
    */
-  public static boolean isAjaxUploadWithProgressEventsSupported() {
-    return isFileAPISupported() && isAjaxUploadProgressEventsSupported() && isFormDataSupported();
+  public Uploader setFilePriority(String fileId, int priority) {
+    File file = this.fileQueue.get(fileId);
+    if (file != null) {
+      nativeSetProperty(file, "priority", priority);
+      this.fileQueue.reorder(file);
+    }
+    return this;
   }
 
-  private static native boolean isFileAPISupported() /*-{
-      var inputElement = document.createElement('INPUT');
-      inputElement.type = 'file';
-      return 'files' in inputElement;
-  }-*/;
-
-  private static native boolean isAjaxUploadProgressEventsSupported() /*-{
-      var xhr = new XMLHttpRequest();
-      return !!(xhr && ('upload' in xhr) && ('onprogress' in xhr.upload));
-  }-*/;
+  private BandwidthLimiter bandwidthLimiter = null;
+  private boolean uploadStartPaced = false;
 
-  private static native boolean isFormDataSupported() /*-{
-      return !!window.FormData;
-  }-*/;
+  // The offsets at which the resumable uploads waiting for bandwidth continue, keyed by file id
+  private HashMap<String, Double> pacedResumableOffsetsById = new HashMap<String, Double>();
 
-  // Purposefully using concrete types here instead of a generic list to increase GWT performance
-  private ArrayList<JavaScriptObject> nativeFilesQueued = new ArrayList<JavaScriptObject>();
-  private HashMap<String, JavaScriptObject>
-      nativeFilesQueuedById =
-      new HashMap<String, JavaScriptObject>();
+  private final Timer pacingTimer = new Timer() {
+    @Override
+    public void run() {
+      resumePacedUploads();
+    }
+  };
 
-  private FileUpload fileUpload;
+  /**
+   * Convenience method for capping the rate at which the component uploads, so that background
+   * uploads leave some room on the user's connection for other traffic.  The cap is shared by
+   * all of the uploads in flight, and may be changed at any time (even while files are being
+   * uploaded), e.g. in order to lower it while the user is active and to raise it again while
+   * the user is idle.
+   * <p>
+   * As a request can't be throttled once it has been sent, the cap is enforced by pacing the
+   * requests: chunked (see {@link #setChunkSize(long)}), resumable and direct to object storage
+   * uploads only send their next chunk once the bandwidth is available, with the chunks of
+   * chunked and resumable uploads kept to about a second's worth of bytes.  Streamed uploads
+   * (see {@link #setStreamingUpload(boolean)}) are throttled as their body is produced, whereas
+   * files uploaded in a single XMLHttpRequest are sent in one burst, with the next upload held
+   * back until the rate is back within the cap.
+   *
+   * @param bytesPerSecond The maximum number of bytes uploaded per second, or 0 for no limit
+   *                       (default: 0).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setBandwidthLimit(long bytesPerSecond) {
+    if (bytesPerSecond <= 0) {
+      this.bandwidthLimiter = null;
+    } else if (this.bandwidthLimiter == null) {
+      this.bandwidthLimiter = new BandwidthLimiter(bytesPerSecond);
+    } else {
+      this.bandwidthLimiter.setBytesPerSecond(bytesPerSecond, System.currentTimeMillis());
+    }
 
-  @Override
-  protected void onLoad() {
-    if (this.loaded) {
-      return;
+    // Anything waiting for bandwidth is re-paced against the new limit straight away
+    if (this.pacingTimer.isRunning()) {
+      this.pacingTimer.cancel();
+      resumePacedUploads();
     }
-    this.loaded = true;
+    return this;
+  }
 
-    // Make sure our entire panel fits the size that they wanted for the button
-    if (this.buttonWidth >= 0) {
-      this.setWidth(this.buttonWidth + "px");
+  /**
+   * Return true if a request may be sent right now, otherwise make sure the uploads waiting for
+   * bandwidth are resumed once it's available again.
+   */
+  private boolean hasBandwidth() {
+    if (this.bandwidthLimiter == null) {
+      return true;
     }
-    if (this.buttonHeight >= 0) {
-      this.setHeight(this.buttonHeight + "px");
+    double now = System.currentTimeMillis();
+    if (this.bandwidthLimiter.hasTokens(now)) {
+      return true;
+    }
+    if (!this.pacingTimer.isRunning()) {
+      this.pacingTimer.schedule((int) this.bandwidthLimiter.getDelay(now));
+    }
+    return false;
+  }
+
+  /**
+   * Take the bytes of a request about to be sent out of the bandwidth available.
+   *
+   * @return The number of milliseconds until the next request may be sent.
+   */
+  private double reserveBandwidth(double bytes) {
+    return this.bandwidthLimiter != null
+           ? this.bandwidthLimiter.consume(bytes, System.currentTimeMillis()) : 0;
+  }
+
+  private double getPacedRequestSize(double length) {
+    return this.bandwidthLimiter != null
+           ? Math.min(length, this.bandwidthLimiter.getMaxRequestSize()) : length;
+  }
+
+  private void resumePacedUploads() {
+    for (ChunkedUpload chunkedUpload : new ArrayList<ChunkedUpload>(this.chunkedUploadsById.values())) {
+      startChunkUploads(chunkedUpload);
+    }
+    for (String fileId : new ArrayList<String>(this.pacedResumableOffsetsById.keySet())) {
+      if (!hasBandwidth()) {
+        break;
+      }
+      Double offset = this.pacedResumableOffsetsById.remove(fileId);
+      JavaScriptObject nativeFile = this.fileQueue.get(fileId);
+      if (nativeFile != null && nativeFile.<File>cast().getStatus() == File.Status.IN_PROGRESS) {
+        startResumableAppend(nativeFile, offset);
+      }
+    }
+    if (this.uploadStartPaced) {
+      this.uploadStartPaced = false;
+      startUpload();
+    }
+  }
+
+  private static final String DEFAULT_COMPRESSED_FILE_TYPES =
+      "text/*;application/json;application/x-ndjson;application/xml;application/javascript;"
+      + "image/svg+xml;*.csv;*.tsv;*.json;*.ndjson;*.log;*.txt;*.xml;*.sql;*.svg";
+
+  // Formats that are already compressed, which would only get bigger if compressed again
+  private static final String INCOMPRESSIBLE_FILE_TYPES =
+      "image/jpeg;image/png;image/gif;image/webp;image/avif;image/heic;video/*;audio/*;"
+      + "application/pdf;application/zip;application/gzip;application/x-gzip;application/zstd;"
+      + "application/x-bzip2;application/x-xz;application/x-7z-compressed;"
+      + "application/x-rar-compressed;*.jpg;*.jpeg;*.png;*.gif;*.webp;*.avif;*.heic;*.mp4;"
+      + "*.mov;*.mkv;*.webm;*.mp3;*.aac;*.ogg;*.pdf;*.zip;*.gz;*.tgz;*.bz2;*.xz;*.zst;*.7z;"
+      + "*.rar;*.docx;*.xlsx;*.pptx";
+
+  private String compression = null;
+
+  /**
+   * Convenience method for enabling client side compression of the uploaded files.  When enabled,
+   * files matching the types set via {@link #setCompressedFileTypes(String)} are piped through
+   * the browser's <code>CompressionStream</code> before being uploaded.  Formats that are
+   * already compressed (such as jpeg, zip or mp4 files) are always uploaded as is, as are all
+   * files in browsers which don't support the <code>CompressionStream</code> API.
+   * <p>
+   * Compressed uploads are labelled so that the server can tell them apart: multipart uploads
+   * carry the additional <code>content_encoding</code> and <code>original_size</code> post
+   * parameters, while resumable uploads carry them as <code>contentencoding</code> and
+   * <code>originalsize</code> upload metadata.  Progress events report both the bytes of the
+   * original file (see {@link UploadProgressEvent#getBytesComplete()}) and the bytes actually
+   * sent over the wire (see {@link UploadProgressEvent#getWireBytesComplete()}).
+   *
+   * @param compression The compression format to use, which may be "gzip", "deflate" or
+   *                    "deflate-raw", or null to disable compression (default: null).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setCompression(String compression) {
+    this.compression = compression;
+    return this;
+  }
+
+  private String compressedFileTypes = DEFAULT_COMPRESSED_FILE_TYPES;
+
+  /**
+   * Set the types of files that should be compressed when compression has been enabled via
+   * {@link #setCompression(String)}.  The setting accepts a semi-colon separated list of file
+   * extensions (e.g. "*.csv") and/or mime types (e.g. "application/json" or "text/*").  By
+   * default common text based formats (text, csv, json, xml, log files, etc.) are compressed.
+   *
+   * @param compressedFileTypes A semi-colon delimited list of the file types to compress.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setCompressedFileTypes(String compressedFileTypes) {
+    this.compressedFileTypes =
+        compressedFileTypes != null ? compressedFileTypes : DEFAULT_COMPRESSED_FILE_TYPES;
+    return this;
+  }
+
+  // Formats which can be decoded by createImageBitmap() without losing any animation frames
+  private static final String TRANSFORMABLE_IMAGE_TYPES =
+      "image/jpeg;image/png;image/webp;image/bmp;*.jpg;*.jpeg;*.png;*.webp;*.bmp";
+
+  private int imageMaxDimension = 0;
+  private double imageQuality = 0.85;
+  private String imageType = null;
+
+  /**
+   * Convenience method for downscaling images on the client before they are uploaded.  When
+   * enabled, JPEG, PNG, WebP and BMP images whose width or height exceed the given maximum are
+   * decoded with <code>createImageBitmap</code>, resized on an <code>OffscreenCanvas</code> to
+   * fit within the maximum while keeping their aspect ratio, and re-encoded at the given quality.
+   * The re-encoded image is then uploaded in place of the original, with the original and
+   * transformed sizes available via {@link File#getSize()} and {@link File#getTransformedSize()}.
+   * Images are uploaded as is in browsers which don't support <code>OffscreenCanvas</code>.
+   *
+   * @param maxDimension The maximum width and height (in pixels) of the uploaded images, or 0 to
+   *                     disable image downscaling (default: 0).
+   * @param quality      The quality (between 0 and 1) to re-encode lossy formats such as JPEG
+   *                     and WebP at (default: 0.85).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setImageResize(int maxDimension, double quality) {
+    this.imageMaxDimension = maxDimension;
+    this.imageQuality = quality;
+    return this;
+  }
+
+  /**
+   * Set the mime type (e.g. "image/jpeg" or "image/webp") that images downscaled via
+   * {@link #setImageResize(int, double)} are re-encoded to.
+   *
+   * @param imageType The mime type to re-encode images to, or null to keep the type of the
+   *                  original image (default: null).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setImageResizeType(String imageType) {
+    this.imageType = imageType;
+    return this;
+  }
+
+  private long chunkSize = 0;
+
+  /**
+   * Convenience method for enabling the chunked upload mode of the component.  When a chunk size
+   * is set, any file larger than the chunk size is split (via <code>Blob.slice()</code>) into
+   * consecutive chunks which are each posted to the server as a separate request.  Every chunk
+   * request carries the following additional post parameters so that the server can reassemble
+   * the file:
+   * <ul>
+   * <li><code>upload_id</code> - a unique identifier shared by all chunks of the same file</li>
+   * <li><code>chunk_index</code> - the zero based index of the chunk within the file</li>
+   * <li><code>chunk_offset</code> - the byte offset of the chunk within the file</li>
+   * <li><code>chunk_size</code> - the number of bytes contained in the chunk</li>
+   * <li><code>total_size</code> - the total size of the file in bytes</li>
+   * </ul>
+   * A failed chunk fails the current attempt to upload the file, and the other chunks still in
+   * flight are aborted.  However, when the file is attempted again (see
+   * {@link #setRetryPolicy(RetryPolicy)} and {@link #setRequeueOnError(boolean)}) the next attempt
+   * keeps the same <code>upload_id</code> and only sends the chunks the server hasn't accepted
+   * yet, so a failure only costs the chunks that were in flight rather than the whole file.
+   * Progress events still report the bytes uploaded across the whole file, and the
+   * {@link UploadSuccessHandler} is only invoked once, after the final chunk has been accepted by
+   * the server (with the response of that final chunk).
+   * <p>
+   * By default the chunks of a file are sent one after the other, see
+   * {@link #setMaxConcurrentChunks(int)} to upload several chunks of the same file in parallel.
+   *
+   * @param chunkSize The maximum number of bytes to send per request, or 0 to disable chunking
+   *                  (default: 0).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setChunkSize(long chunkSize) {
+    this.chunkSize = Math.max(0, chunkSize);
+    return this;
+  }
+
+  private int targetChunkDuration = 0;
+  private long minChunkSize = 0;
+  private long maxChunkSize = Long.MAX_VALUE;
+
+  /**
+   * Convenience method for enabling adaptive chunk sizing when uploading in chunked (or
+   * resumable) mode.  Rather than always sending chunks of the size set via
+   * {@link #setChunkSize(long)}, the size of each chunk is chosen from the upload speed measured
+   * so far (see {@link File#getMovingAverageSpeed()}) so that every request takes roughly the
+   * target duration.  Fast connections end up sending large chunks, which keeps the per request
+   * overhead low, while slow connections send small chunks which are cheap to retry.
+   * <p>
+   * The chunk size set via {@link #setChunkSize(long)} is still used to decide which files are
+   * uploaded in chunks, and as the size of the first chunk of each file (before any speed
+   * measurements are available).
+   *
+   * @param targetChunkDuration The number of milliseconds each chunk should take to upload, or 0
+   *                            to disable adaptive chunk sizing (default: 0).
+   * @param minChunkSize        The smallest chunk size (in bytes) that may be chosen.
+   * @param maxChunkSize        The largest chunk size (in bytes) that may be chosen.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setAdaptiveChunkSize(int targetChunkDuration, long minChunkSize,
+                                       long maxChunkSize) {
+    this.targetChunkDuration = Math.max(0, targetChunkDuration);
+    this.minChunkSize = Math.max(1, minChunkSize);
+    this.maxChunkSize = Math.max(this.minChunkSize, maxChunkSize);
+    return this;
+  }
+
+  private int maxConcurrentChunks = 1;
+
+  /**
+   * Convenience method for setting how many chunks of the same file may be uploaded at the same
+   * time when the chunked upload mode has been enabled via {@link #setChunkSize(long)}.  Sending
+   * several chunks in parallel allows a single large file to make use of the available bandwidth
+   * even when one connection on its own is limited by its TCP window.
+   * <p>
+   * As the server may receive (and acknowledge) the chunks of a file in any order when more than
+   * one chunk is allowed in flight, a final "commit" request is posted once every chunk has been
+   * acknowledged.  The commit request carries the post params along with the
+   * <code>upload_id</code>, <code>total_size</code>, <code>chunk_count</code> and
+   * <code>upload_commit</code> (always "true") parameters, and its response is the one passed
+   * to the {@link UploadSuccessHandler}.
+   *
+   * @param maxConcurrentChunks The maximum number of chunks of a single file to upload at the
+   *                            same time (default: 1).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setMaxConcurrentChunks(int maxConcurrentChunks) {
+    this.maxConcurrentChunks = Math.max(1, maxConcurrentChunks);
+    return this;
+  }
+
+  private String chunkCommitURL;
+
+  /**
+   * By default the commit request sent after all of the chunks of a file have been uploaded in
+   * parallel (see {@link #setMaxConcurrentChunks(int)}) is posted to the same URL as the chunks
+   * themselves.  Call this method if you'd like the commit requests to go to a different URL.
+   *
+   * @param chunkCommitURL The URL that the commit requests should be posted to (or null to use
+   *                       the same URL as the chunks).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setChunkCommitURL(String chunkCommitURL) {
+    this.chunkCommitURL = chunkCommitURL;
+    return this;
+  }
+
+  private String objectStorageInitiateURL = null;
+  private String objectStorageCompleteURL = null;
+
+  /**
+   * Convenience method for enabling the direct to object storage mode of the component, in which
+   * files are uploaded straight to an S3 compatible object store (such as Amazon S3, Google Cloud
+   * Storage's XML API or a local MinIO instance) via its multipart upload API, so that none of
+   * the uploaded bytes have to pass through the application's own servers:
+   * <ol>
+   * <li>The initiate URL is sent a POST request with a JSON body holding the file's
+   * <code>fileName</code>, <code>fileSize</code>, <code>contentType</code>,
+   * <code>partSize</code> and <code>partCount</code> (along with the post params as
+   * <code>metadata</code>).  The application is expected to create the multipart upload and to
+   * respond with a JSON object holding its <code>uploadId</code>, the object's <code>key</code>
+   * and a presigned URL for each of the parts (in order) as <code>partUrls</code>.</li>
+   * <li>The parts are PUT directly to their presigned URLs, with as many of them in flight at
+   * once as allowed by {@link #setMaxConcurrentChunks(int)}.  The object store has to expose the
+   * "ETag" response header via its CORS configuration, as the ETags of the parts are needed in
+   * order to complete the upload.  The HTTP headers of the component are not sent along, as they
+   * are meant for the application's own servers.</li>
+   * <li>The complete URL is sent a POST request with a JSON body holding the
+   * <code>uploadId</code>, the <code>key</code> and the <code>partNumber</code> and
+   * <code>etag</code> of each of the <code>parts</code>, which the application is expected to
+   * pass on to the object store.  Its response is treated as the response for the file.</li>
+   * </ol>
+   * The parts are the size set via {@link #setChunkSize(long)}, but no smaller than 5 MB (the
+   * minimum part size of S3) and large enough for the file to fit within 10,000 parts.  Object
+   * stores keep the parts of uploads that are never completed (e.g. because they failed), which
+   * is best cleaned up with a lifecycle rule on the bucket.
+   *
+   * @param initiateURL The URL which initiates the multipart uploads, or null to disable the
+   *                    direct to object storage mode (default: null).
+   * @param completeURL The URL which completes the multipart uploads.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setObjectStorageUpload(String initiateURL, String completeURL) {
+    this.objectStorageInitiateURL = initiateURL;
+    this.objectStorageCompleteURL = completeURL;
+    return this;
+  }
+
+  private boolean resumable = false;
+
+  /**
+   * Convenience method for enabling the resumable upload mode of the component, which speaks the
+   * <a href="https://tus.io/protocols/resumable-upload">tus 1.0</a> core protocol (along with its
+   * creation extension) instead of posting multipart form data.  In this mode:
+   * <ul>
+   * <li>The upload URL is treated as the tus creation endpoint, which is sent a POST request
+   * (with the file's size and metadata) in order to create a new upload resource.</li>
+   * <li>The file contents are then appended to the upload resource via PATCH requests, using
+   * the chunk size set via {@link #setChunkSize(long)} (or the remainder of the file in a single
+   * request if no chunk size has been set).  Any post params are sent as upload metadata.</li>
+   * <li>The location of the upload resource is remembered in the browser's local storage, keyed
+   * on the file's name, size and last modification time.  If the same file is uploaded again
+   * (e.g. after being re-queued on an error, or re-selected after a page reload), the uploader
+   * first asks the server for the committed offset via a HEAD request and then continues from
+   * that point rather than starting again from the first byte.</li>
+   * </ul>
+   *
+   * @param resumable Whether the tus resumable upload protocol should be used (default: false).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setResumable(boolean resumable) {
+    this.resumable = resumable;
+    return this;
+  }
+
+  private String rawUploadMethod = null;
+  private MetadataLocation rawUploadMetadataLocation = MetadataLocation.HEADERS;
+
+  /**
+   * Convenience method for enabling the raw upload mode of the component, in which the contents
+   * of the file are sent directly as the body of the request instead of being wrapped in
+   * multipart form data.  The "Content-Type" of the request is set to the file's mime type (and
+   * the browser sets the "Content-Length" to the file's size), so that the server can stream the
+   * request straight to storage without having to parse it first.  The file's name and the post
+   * params are sent either as request headers or as query string parameters, while compressed
+   * uploads (see {@link #setCompression(String)}) also carry a "Content-Encoding" header.
+   * <p>
+   * The raw upload mode applies to files which are uploaded in a single request, whereas chunked
+   * (see {@link #setChunkSize(long)}) and resumable (see {@link #setResumable(boolean)}) uploads
+   * keep using their own protocols.
+   *
+   * @param method           The HTTP method to send the file with, e.g. "PUT" or "POST", or null
+   *                         to disable the raw upload mode (default: null).
+   * @param metadataLocation Where the file's name and the post params are sent.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setRawUpload(String method, MetadataLocation metadataLocation) {
+    this.rawUploadMethod = method;
+    this.rawUploadMetadataLocation =
+        metadataLocation != null ? metadataLocation : MetadataLocation.HEADERS;
+    return this;
+  }
+
+  private boolean streamingUpload = false;
+  private boolean streamingUploadUnavailable = false;
+
+  /**
+   * Convenience method for enabling the streaming transport of the component, which sends files
+   * uploaded in a single request via <code>fetch()</code> with a <code>ReadableStream</code> as
+   * the request body, instead of via an XMLHttpRequest.  As the body is produced on the fly,
+   * files compressed via {@link #setCompression(String)} are compressed while they are being
+   * sent, rather than being fully buffered in memory first.  Both multipart and raw (see
+   * {@link #setRawUpload(String, MetadataLocation)}) uploads are supported.
+   * <p>
+   * Since <code>fetch()</code> has no upload progress events, progress is reported as the bytes
+   * of the file pulled into the request body.  Browsers which don't support streaming request
+   * bodies (or servers which can't accept them, as they require HTTP/2) automatically fall back
+   * to the XMLHttpRequest transport.
+   *
+   * @param streamingUpload Whether the streaming transport should be used when available
+   *                        (default: false).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setStreamingUpload(boolean streamingUpload) {
+    this.streamingUpload = streamingUpload;
+    return this;
+  }
+
+  private int maxWorkers = -1;
+  private FileWorkerPool workerPool = null;
+
+  /**
+   * Convenience method for setting the maximum number of Web Workers which perform the CPU heavy
+   * work on the files being uploaded, namely hashing them (see
+   * {@link #setDeduplicationURL(String)}), downscaling images (see
+   * {@link #setImageResize(int, double)}) and compressing them (see
+   * {@link #setCompression(String)}).  The workers are only started once there's work for them,
+   * and each of them works on a single file at a time while any further files wait their turn.
+   * If the browser can't run the workers the same work is done on the main thread instead.
+   *
+   * @param maxWorkers The maximum number of workers, or 0 to always do the work on the main thread
+   *                   (default: one less than the number of cores of the device, up to 4).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setMaxWorkers(int maxWorkers) {
+    this.maxWorkers = maxWorkers;
+    return this;
+  }
+
+  private FileWorkerPool getWorkerPool() {
+    if (this.workerPool == null) {
+      this.workerPool = new FileWorkerPool(
+          this.maxWorkers >= 0 ? this.maxWorkers : FileWorkerPool.getDefaultPoolSize());
+    }
+    return this.workerPool;
+  }
+
+  private String deduplicationURL = null;
+
+  /**
+   * Convenience method for enabling content based deduplication of uploads.  When enabled, the
+   * SHA-256 hash of each file's contents is computed before it is uploaded, and the given URL is
+   * sent a GET request with the hex encoded hash and the file's size appended as the
+   * <code>content_hash</code> and <code>total_size</code> query parameters.  If the server
+   * responds with a 2xx status it is assumed to already have the file, which then completes
+   * immediately (via the usual upload success and upload complete events) without any of its
+   * bytes being sent.  Any other response (e.g. a 404) causes the file to be uploaded as usual,
+   * with the computed hash included as the <code>content_hash</code> post parameter.
+   * <p>
+   * The number of bytes saved is available via {@link Stats#getBytesSaved()}.  Files are hashed
+   * in slices by the uploader's Web Workers (see {@link #setMaxWorkers(int)}), so only a single
+   * slice of each file is held in memory at a time.
+   *
+   * @param deduplicationURL The URL which is asked whether the server already has a file with the
+   *                         same contents, or null to disable deduplication (default: null).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setDeduplicationURL(String deduplicationURL) {
+    this.deduplicationURL = deduplicationURL;
+    return this;
+  }
+
+  // The XMLHttpRequests currently in progress (if any) keyed by file id, which we'll need a
+  // reference to in case the user attempts to cancel an in progress upload.
+  private HashMap<String, JavaScriptObject>
+      nativeXMLHttpRequestsById =
+      new HashMap<String, JavaScriptObject>();
+
+  // The files currently being uploaded in chunked mode, which may each have several
+  // XMLHttpRequests in progress
+  private HashMap<String, ChunkedUpload> chunkedUploadsById = new HashMap<String, ChunkedUpload>();
+  // The chunked uploads of the files that failed, kept until the files are attempted again
+  private HashMap<String, ChunkedUpload> interruptedChunkedUploadsById =
+      new HashMap<String, ChunkedUpload>();
+
+  // The files whose contents are still being prepared (e.g. compressed) before being uploaded
+  private HashMap<String, JavaScriptObject>
+      nativeFilesPreparingById =
+      new HashMap<String, JavaScriptObject>();
+
+  // The batch requests currently in progress, each of which counts as a single upload, along with
+  // the batch request each of the files being uploaded as part of a batch belongs to
+  private ArrayList<JavaScriptObject> nativeBatchRequests = new ArrayList<JavaScriptObject>();
+  private HashMap<String, JavaScriptObject>
+      nativeBatchRequestsByFileId =
+      new HashMap<String, JavaScriptObject>();
+
+  private int getUploadsInProgress() {
+    return this.nativeXMLHttpRequestsById.size() + this.chunkedUploadsById.size()
+           + this.nativeFilesPreparingById.size() + this.nativeBatchRequests.size();
+  }
+
+  /**
+   * Cause the next files in the queue to start the uploader process.  At most
+   * {@link #setMaxConcurrentUploads(int)} files will be uploaded at the same time, so if all
+   * of the upload slots are already in use this method will not start any additional uploads.
+   */
+  public void startUpload() {
+    if (this.uploadURL == null) {
+      throw new IllegalStateException(
+          "The 'startUpload()' method was invoked before the uploader URL was provided.  "
+          + "Please call the 'setUploadURL' first."
+      );
+    }
+
+    if (this.adaptiveConcurrency && this.concurrencyController == null) {
+      this.concurrencyController = new ConcurrencyController(
+          Math.max(this.maxConcurrentUploads, this.maxConcurrentChunks));
+    }
+    nativeSetProperty(getStats(), CONCURRENCY, Math.max(getConcurrentUploadsLimit(),
+                                                        getConcurrentChunksLimit()));
+
+    if (this.archiveName != null) {
+      if (this.selectionsQueueing > 0) {
+        // Wait for the rest of the selection, so that it's packed into a single archive
+        this.archiveStartPending = true;
+        return;
+      }
+      packQueuedFiles();
+    }
+
+    while (getUploadsInProgress() < getConcurrentUploadsLimit()) {
+      JavaScriptObject nativeFile = getNextQueuedFile();
+      if (nativeFile == null) {
+        break;
+      }
+      if (!hasBandwidth()) {
+        this.uploadStartPaced = true;
+        break;
+      }
+      if (isBatchable(nativeFile)) {
+        startBatchUpload();
+      } else {
+        startUpload(nativeFile);
+      }
+    }
+  }
+
+  private JavaScriptObject getNextQueuedFile() {
+    return this.fileQueue.getNextWaiting();
+  }
+
+  private void startUpload(JavaScriptObject nativeFile) {
+    fireUploadStarted(nativeFile);
+
+    if (this.deduplicationURL != null && isContentHashSupported()
+        && !nativeGetPropertyAsBoolean(nativeFile, "deduplicationChecked")) {
+      // The upload continues once the server has told us whether it already has the file
+      this.nativeFilesPreparingById.put(nativeFile.<File>cast().getId(), nativeFile);
+      final File file = nativeFile.cast();
+      getWorkerPool().submit(file, "hash", null, new FileWorkerPool.Callback() {
+        @Override
+        public void onSuccess(JavaScriptObject result) {
+          fileHashedEventCallback(file, nativeGetPropertyAsString(result, "hash"));
+        }
+
+        @Override
+        public void onFailure(String message) {
+          // Fall back to uploading the file if it can't be hashed
+          uploadDeduplicationEventCallback(file, false, null);
+        }
+      });
+    } else {
+      prepareFile(nativeFile);
+    }
+
+    //need to keep our global stats up to date manually
+    nativeSetProperty(getStats(), IN_PROGRESS, getUploadsInProgress());
+  }
+
+  private void fireUploadStarted(JavaScriptObject nativeFile) {
+    this.fileQueue.removeWaiting(nativeFile.<File>cast());
+
+    // Initialize properties on Start
+    nativeSetProperty(nativeFile, "startTime", System.currentTimeMillis());
+    nativeSetProperty(nativeFile, "timeSinceLastEvent", System.currentTimeMillis());
+
+    //we need to fire it manually for the Ajax/XMLHttpRequest Level 2 case
+    nativeUpdateFileProperties(nativeFile, File.Status.IN_PROGRESS.toInt());
+    JsArray<File> entries = nativeGetArchiveEntries(nativeFile);
+    if (entries != null) {
+      // The files packed into an archive are started along with it (again, if the archive is
+      // being retried)
+      nativeSetProperty(nativeFile, "archiveCursor", 0);
+      for (int i = 0; i < entries.length(); i++) {
+        this.nativeArchivesByEntryId.put(entries.get(i).getId(), nativeFile);
+        addToQueueProgress(entries.get(i));
+        nativeSetProperty(entries.get(i), "startTime", System.currentTimeMillis());
+        nativeSetProperty(entries.get(i), "timeSinceLastEvent", System.currentTimeMillis());
+        nativeSetProperty(entries.get(i), "previousBytesComplete", 0);
+        nativeSetProperty(entries.get(i), "archiveBytesComplete", -1);
+        nativeUpdateFileProperties(entries.get(i), File.Status.IN_PROGRESS.toInt());
+        if (this.uploadStartHandler != null) {
+          this.uploadStartHandler.onUploadStart(new UploadStartEvent(entries.get(i)));
+        }
+      }
+    } else if (this.uploadStartHandler != null) {
+      this.uploadStartHandler.onUploadStart(new UploadStartEvent(nativeFile.<File>cast()));
+    }
+
+    // Let any registered progress handlers know that we're starting at the beginning
+    fireUploadProgress(nativeFile.<File>cast(), 0.0,
+                                nativeFile.<File>cast().getUploadSize());
+  }
+
+  private void prepareFile(JavaScriptObject nativeFile) {
+    boolean transformImage = shouldTransformImage(nativeFile);
+    // Streamed uploads are compressed on the fly instead
+    boolean compress = shouldCompress(nativeFile) && !isStreamingUpload(nativeFile);
+    if (!nativeGetPropertyAsBoolean(nativeFile, "uploadPrepared") && (transformImage || compress)) {
+      // The upload continues once the transformed contents are available
+      this.nativeFilesPreparingById.put(nativeFile.<File>cast().getId(), nativeFile);
+      final File file = nativeFile.cast();
+      getWorkerPool().submit(file, "prepare", FileWorkerPool.createOptions(
+          transformImage ? this.imageMaxDimension : 0, this.imageQuality, this.imageType,
+          compress ? this.compression : null), new FileWorkerPool.Callback() {
+        @Override
+        public void onSuccess(JavaScriptObject result) {
+          nativeApplyPreparedResult(file, result);
+          uploadPreparedEventCallback(file);
+        }
+
+        @Override
+        public void onFailure(String message) {
+          uploadPrepareErrorEventCallback(file, "Unable to prepare the file for upload: " + message);
+        }
+      });
+    } else {
+      sendFile(nativeFile);
+    }
+  }
+
+  private void sendFile(JavaScriptObject nativeFile) {
+    nativeSetProperty(nativeFile, "uploadPrepared", 1);
+
+    if (this.objectStorageInitiateURL != null) {
+      startObjectStorageUpload(nativeFile);
+    } else if (this.resumable) {
+      startResumableUpload(nativeFile);
+    } else if (this.chunkSize > 0 && nativeFile.<File>cast().getUploadSize() > this.chunkSize) {
+      ChunkedUpload chunkedUpload = takeInterruptedChunkedUpload(nativeFile);
+      if (chunkedUpload == null) {
+        chunkedUpload = new ChunkedUpload(nativeFile.<File>cast(),
+                                          nativeFile.<File>cast().getUploadSize(),
+                                          createUploadId());
+      }
+      resumeChunkedUpload(chunkedUpload);
+    } else if (isStreamingUpload(nativeFile)) {
+      this.nativeXMLHttpRequestsById.put(
+          nativeFile.<File>cast().getId(),
+          nativeStartStreamingUpload(nativeFile, getAjaxUploadURL(),
+                                     getFilePostName(),
+                                     this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+                                     this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null,
+                                     this.rawUploadMethod,
+                                     this.rawUploadMetadataLocation == MetadataLocation.QUERY_STRING,
+                                     shouldCompress(nativeFile) ? this.compression : null
+          )
+      );
+    } else {
+      // A single request can't be paced, so it's charged for all of its bytes up front
+      reserveBandwidth(nativeFile.<File>cast().getUploadSize());
+      this.nativeXMLHttpRequestsById.put(
+          nativeFile.<File>cast().getId(),
+          nativeStartAjaxUpload(nativeFile, getAjaxUploadURL(),
+                                getFilePostName(),
+                                this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+                                this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null,
+                                this.rawUploadMethod,
+                                this.rawUploadMetadataLocation == MetadataLocation.QUERY_STRING
+          )
+      );
+    }
+
+    //need to keep our global stats up to date manually
+    nativeSetProperty(getStats(), IN_PROGRESS, getUploadsInProgress());
+  }
+
+  private boolean isStreamingUpload(JavaScriptObject nativeFile) {
+    return this.streamingUpload && !this.streamingUploadUnavailable && !this.resumable
+           && this.objectStorageInitiateURL == null
+           && !(this.chunkSize > 0 && nativeFile.<File>cast().getUploadSize() > this.chunkSize)
+           && isStreamingUploadSupported();
+  }
+
+  // See: https://developer.chrome.com/docs/capabilities/web-apis/fetch-streaming-requests
+  private static native boolean isStreamingUploadSupported() /*-{
+      if (typeof $wnd.fetch === 'undefined' || typeof $wnd.ReadableStream === 'undefined'
+          || typeof $wnd.AbortController === 'undefined') {
+          return false;
+      }
+      try {
+          var duplexAccessed = false;
+          var init = {body: new $wnd.ReadableStream(), method: 'POST'};
+          Object.defineProperty(init, 'duplex', {
+              get: function () {
+                  duplexAccessed = true;
+                  return 'half';
+              }
+          });
+          var hasContentType = new $wnd.Request('', init).headers.has('Content-Type');
+          return duplexAccessed && !hasContentType;
+      } catch (e) {
+          return false;
+      }
+  }-*/;
+
+  private void streamingUploadRejectedCallback(File file) {
+    // The browser or server can't handle streaming request bodies, so stick with XMLHttpRequests
+    this.streamingUploadUnavailable = true;
+    if (this.nativeXMLHttpRequestsById.remove(file.getId()) != null
+        && file.getStatus() == File.Status.IN_PROGRESS) {
+      nativeSetProperty(file, "uploadPrepared", 0);
+      nativeSetProperty(file, "contentEncoding", (String) null);
+      nativeSetProperty(file, "streamCompressed", 0);
+      prepareFile(file);
+    }
+  }
+
+  private boolean shouldCompress(JavaScriptObject nativeFile) {
+    return this.compression != null && isCompressionStreamSupported()
+           && !matchesFileTypes(nativeFile.<File>cast(), INCOMPRESSIBLE_FILE_TYPES)
+           && matchesFileTypes(nativeFile.<File>cast(), this.compressedFileTypes);
+  }
+
+  private static boolean matchesFileTypes(File file, String fileTypes) {
+    String name = file.getName() != null ? file.getName().toLowerCase() : "";
+    String type = file.getType() != null ? file.getType().toLowerCase() : "";
+    for (String fileType : fileTypes.toLowerCase().split(";")) {
+      fileType = fileType.trim();
+      if ("*.*".equals(fileType) || "*".equals(fileType)) {
+        return true;
+      } else if (fileType.startsWith("*.")) {
+        if (name.endsWith(fileType.substring(1))) {
+          return true;
+        }
+      } else if (fileType.endsWith("/*")) {
+        if (type.startsWith(fileType.substring(0, fileType.length() - 1))) {
+          return true;
+        }
+      } else if (fileType.length() > 0 && fileType.equals(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static native boolean isContentHashSupported() /*-{
+      return !!$wnd.Blob.prototype.arrayBuffer;
+  }-*/;
+
+  private void fileHashedEventCallback(File file, String contentHash) {
+    // The upload may have been cancelled while the file was being hashed
+    if (this.nativeFilesPreparingById.containsKey(file.getId())
+        && file.getStatus() == File.Status.IN_PROGRESS) {
+      nativeSetProperty(file, "contentHash", contentHash);
+      nativeCheckDuplicate(file, this.deduplicationURL,
+                           this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null);
+    }
+  }
+
+  private native void nativeCheckDuplicate(JavaScriptObject file, String url,
+                                           JavaScriptObject headers) /*-{
+      var self = this;
+      var callback = function (exists, serverData) {
+          self.@org.docstr.gwt.uploader.client.Uploader::uploadDeduplicationEventCallback(Lorg/docstr/gwt/uploader/client/File;ZLjava/lang/String;)(
+              file,
+              exists,
+              serverData);
+      };
+
+      var xhr = new XMLHttpRequest();
+      xhr.addEventListener('load', function () {
+          callback(xhr.status >= 200 && xhr.status < 300, xhr.responseText);
+      }, false);
+      xhr.addEventListener('error', function () {
+          callback(false, null);
+      }, false);
+      xhr.addEventListener('timeout', function () {
+          callback(false, null);
+      }, false);
+
+      xhr.open('GET', url + (url.indexOf('?') < 0 ? '?' : '&') + 'content_hash='
+          + file.contentHash + '&total_size=' + file.size, true);
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+
+      // Append additional headers
+      if (headers != null) {
+          for (var headerName in headers) {
+              xhr.setRequestHeader(headerName, headers[headerName]);
+          }
+      }
+
+      xhr.send();
+  }-*/;
+
+  private void uploadDeduplicationEventCallback(File file, boolean exists, String serverData) {
+    // The upload may have been cancelled while the file was being checked
+    if (this.nativeFilesPreparingById.remove(file.getId()) == null
+        || file.getStatus() != File.Status.IN_PROGRESS) {
+      return;
+    }
+    nativeSetProperty(file, "deduplicationChecked", 1);
+
+    if (exists) {
+      nativeSetProperty(file, "deduplicated", 1);
+      nativeSetProperty(getStats(), "bytes_saved", getStats().getBytesSaved() + file.getSize());
+      uploadSucceeded(nativeUpdateFileProperties(file, File.Status.COMPLETE.toInt()).<File>cast(),
+                      "200", serverData);
+    } else {
+      prepareFile(file);
+      nativeSetProperty(getStats(), IN_PROGRESS, getUploadsInProgress());
+    }
+  }
+
+  private boolean shouldTransformImage(JavaScriptObject nativeFile) {
+    return this.imageMaxDimension > 0 && isImageTransformSupported()
+           && matchesFileTypes(nativeFile.<File>cast(), TRANSFORMABLE_IMAGE_TYPES);
+  }
+
+  private static native boolean isImageTransformSupported() /*-{
+      return typeof $wnd.createImageBitmap !== 'undefined'
+          && typeof $wnd.OffscreenCanvas !== 'undefined';
+  }-*/;
+
+  private static native boolean isCompressionStreamSupported() /*-{
+      return typeof $wnd.CompressionStream !== 'undefined' && typeof $wnd.Response !== 'undefined';
+  }-*/;
+
+  private static native void nativeApplyPreparedResult(JavaScriptObject file,
+                                                       JavaScriptObject result) /*-{
+      if (result.blob) {
+          file.uploadBlob = result.blob;
+      }
+      if (result.transformedSize) {
+          file.transformedSize = result.transformedSize;
+          file.transformedWidth = result.transformedWidth;
+          file.transformedHeight = result.transformedHeight;
+      }
+      if (result.contentEncoding) {
+          file.contentEncoding = result.contentEncoding;
+      }
+  }-*/;
+
+  private void uploadPreparedEventCallback(File file) {
+    // The upload may have been cancelled while the file was being prepared
+    if (this.nativeFilesPreparingById.remove(file.getId()) != null
+        && file.getStatus() == File.Status.IN_PROGRESS) {
+      sendFile(file);
+    }
+  }
+
+  private void uploadPrepareErrorEventCallback(File file, String message) {
+    if (this.nativeFilesPreparingById.remove(file.getId()) != null
+        && file.getStatus() == File.Status.IN_PROGRESS) {
+      uploadErrorEventCallback(
+          nativeUpdateFileProperties(file, File.Status.ERROR.toInt()).<File>cast(),
+          UploadErrorEvent.ErrorCode.IO_ERROR.toInt(), message);
+    }
+  }
+
+  // See: https://developer.mozilla.org/en/Using_files_from_web_applications
+  private native JavaScriptObject nativeStartAjaxUpload(JavaScriptObject file, String url,
+                                                        String filePostName,
+                                                        JavaScriptObject postParams,
+                                                        JavaScriptObject httpHeaders,
+                                                        String rawMethod,
+                                                        boolean metadataInQueryString) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+      var blob = file.uploadBlob || file;
+
+      // Setup the event handlers we'll need to let the consuming application know what's going on
+      xhr.upload.addEventListener('progress', function (e) {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;DD)(
+              file,
+              e.loaded,
+              e.total);
+      }, false);
+      xhr.addEventListener('load', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadSuccessEventCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;Ljava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -4     // File.Status.COMPLETE
+              ),
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -3      // File.Status.ERROR
+              ),
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -5      // File.Status.CANCELLED
+              ),
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      // In raw mode the file's metadata travels alongside the body, rather than inside of it
+      var metadata = null;
+      if (rawMethod != null) {
+          metadata = @org.docstr.gwt.uploader.client.Uploader::nativeGetRawMetadata(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JavaScriptObject;)(file, postParams);
+          if (metadataInQueryString) {
+              url = @org.docstr.gwt.uploader.client.Uploader::nativeAppendQueryString(Ljava/lang/String;Lcom/google/gwt/core/client/JavaScriptObject;)(url, metadata);
+          }
+      }
+
+      xhr.open(rawMethod != null ? rawMethod : 'POST', url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -3      // File.Status.ERROR
+              ),
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+      
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+      
+      if (rawMethod != null) {
+          // Compressed contents keep the type of the original file, labelled with their encoding
+          xhr.setRequestHeader('Content-Type',
+              (file.contentEncoding ? file.type : blob.type) || 'application/octet-stream');
+          if (file.contentEncoding) {
+              xhr.setRequestHeader('Content-Encoding', file.contentEncoding);
+          }
+          if (!metadataInQueryString) {
+              var metadataHeaders = @org.docstr.gwt.uploader.client.Uploader::nativeGetMetadataHeaders(Lcom/google/gwt/core/client/JavaScriptObject;)(metadata);
+              for (var key in metadataHeaders) {
+                  xhr.setRequestHeader(key, metadataHeaders[key]);
+              }
+          }
+
+          // Kick off the raw upload, letting the browser set the Content-Length from the blob
+          xhr.send(blob);
+          return xhr;
+      }
+
+      // Send the compressed contents of the file instead, if available
+      var formData = new FormData();
+      formData.append(filePostName, blob, file.name);
+
+      // Append on any post params
+      if (postParams != null) {
+          for (var key in postParams) {
+              formData.append(key, postParams[key]);
+          }
+      }
+      if (file.uploadBlob) {
+          formData.append('original_size', file.size);
+      }
+      if (file.contentEncoding) {
+          formData.append('content_encoding', file.contentEncoding);
+      }
+      if (file.contentHash) {
+          formData.append('content_hash', file.contentHash);
+      }
+      if (file.relativePath || file.webkitRelativePath) {
+          formData.append('relative_path', file.relativePath || file.webkitRelativePath);
+      }
+
+      // Kick off the multipart/form-data upload
+      xhr.send(formData);
+
+      return xhr;
+  }-*/;
+
+  // See: https://developer.mozilla.org/en-US/docs/Web/API/Streams_API
+  private native JavaScriptObject nativeStartStreamingUpload(JavaScriptObject file, String url,
+                                                             String filePostName,
+                                                             JavaScriptObject postParams,
+                                                             JavaScriptObject httpHeaders,
+                                                             String rawMethod,
+                                                             boolean metadataInQueryString,
+                                                             String compression) /*-{
+      var self = this;
+      var blob = file.uploadBlob || file;
+      var encoder = new $wnd.TextEncoder();
+      var abortController = new $wnd.AbortController();
+      var headers = {};
+      var timedOut = false;
+      var bytesPulled = 0;
+      var bytesCompressed = 0;
+      var compressed = false;
+
+      if (compression != null) {
+          file.contentEncoding = compression;
+      }
+      file.streamCompressed = compression != null;
+      file.streamBytesRead = 0;
+
+      // Report the bytes sent as the progress, since fetch() has none of its own.  When the file is
+      // compressed on the fly, the bytes that come out of the compression stream are the ones sent
+      // over the wire, while the bytes pulled from the file are kept as the progress of the file
+      var report = function () {
+          var wireBytesComplete = bytesPulled;
+          var wireBytesTotal = blob.size;
+          if (compression != null) {
+              file.streamBytesRead = bytesPulled;
+              wireBytesComplete = bytesCompressed;
+              // The compressed size is only known at the end, so estimate it from the ratio so far
+              wireBytesTotal = compressed ? bytesCompressed : Math.max(bytesCompressed,
+                  bytesPulled > 0 ? Math.round(blob.size * bytesCompressed / bytesPulled) : blob.size);
+          }
+          self.@org.docstr.gwt.uploader.client.Uploader::uploadProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;DD)(
+              file,
+              wireBytesComplete,
+              wireBytesTotal);
+      };
+      var reader = blob.stream().getReader();
+      var body = new $wnd.ReadableStream({
+          pull: function (controller) {
+              return reader.read().then(function (result) {
+                  if (result.done) {
+                      controller.close();
+                      return;
+                  }
+                  bytesPulled += result.value.byteLength;
+                  controller.enqueue(result.value);
+                  if (compression == null) {
+                      report();
+                  }
+
+                  // Hold back the next pull for as long as the bandwidth limit requires
+                  var delay = self.@org.docstr.gwt.uploader.client.Uploader::reserveBandwidth(D)(result.value.byteLength);
+                  if (delay > 0) {
+                      return new $wnd.Promise(function (resolve) {
+                          $wnd.setTimeout(resolve, delay);
+                      });
+                  }
+              });
+          },
+          cancel: function (reason) {
+              return reader.cancel(reason);
+          }
+      });
+      if (compression != null) {
+          body = body.pipeThrough(new $wnd.CompressionStream(compression))
+              .pipeThrough(new $wnd.TransformStream({
+                  transform: function (chunk, controller) {
+                      bytesCompressed += chunk.byteLength;
+                      controller.enqueue(chunk);
+                      report();
+                  },
+                  flush: function () {
+                      compressed = true;
+                      report();
+                  }
+              }));
+      }
+
+      if (rawMethod != null) {
+          var metadata = @org.docstr.gwt.uploader.client.Uploader::nativeGetRawMetadata(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JavaScriptObject;)(file, postParams);
+          if (file.contentEncoding) {
+              metadata['original_size'] = file.size;
+          }
+          if (metadataInQueryString) {
+              url = @org.docstr.gwt.uploader.client.Uploader::nativeAppendQueryString(Ljava/lang/String;Lcom/google/gwt/core/client/JavaScriptObject;)(url, metadata);
+          } else {
+              headers = @org.docstr.gwt.uploader.client.Uploader::nativeGetMetadataHeaders(Lcom/google/gwt/core/client/JavaScriptObject;)(metadata);
+          }
+          headers['Content-Type'] =
+              (file.contentEncoding ? file.type : blob.type) || 'application/octet-stream';
+          if (file.contentEncoding) {
+              headers['Content-Encoding'] = file.contentEncoding;
+          }
+      } else {
+          // Frame the streamed contents as multipart form data by hand, sending the fields first
+          var boundary = '----GwtUploaderBoundary' + Math.random().toString(16).substring(2);
+          var fields = {};
+          if (postParams != null) {
+              for (var key in postParams) {
+                  fields[key] = postParams[key];
+              }
+          }
+          if (file.contentEncoding || file.uploadBlob) {
+              fields['original_size'] = file.size;
+          }
+          if (file.contentEncoding) {
+              fields['content_encoding'] = file.contentEncoding;
+          }
+          if (file.contentHash) {
+              fields['content_hash'] = file.contentHash;
+          }
+          if (file.relativePath || file.webkitRelativePath) {
+              fields['relative_path'] = file.relativePath || file.webkitRelativePath;
+          }
+          var preamble = '';
+          for (var key in fields) {
+              preamble += '--' + boundary + '\r\nContent-Disposition: form-data; name="' + key
+                  + '"\r\n\r\n' + fields[key] + '\r\n';
+          }
+          preamble += '--' + boundary + '\r\nContent-Disposition: form-data; name="'
+              + filePostName + '"; filename="' + file.name.replace(/"/g, '%22')
+              + '"\r\nContent-Type: ' + (blob.type || 'application/octet-stream') + '\r\n\r\n';
+          var epilogue = '\r\n--' + boundary + '--\r\n';
+
+          var contentReader = body.getReader();
+          var preambleSent = false;
+          body = new $wnd.ReadableStream({
+              pull: function (controller) {
+                  if (!preambleSent) {
+                      preambleSent = true;
+                      controller.enqueue(encoder.encode(preamble));
+                      return;
+                  }
+                  return contentReader.read().then(function (result) {
+                      if (result.done) {
+                          controller.enqueue(encoder.encode(epilogue));
+                          controller.close();
+                      } else {
+                          controller.enqueue(result.value);
+                      }
+                  });
+              },
+              cancel: function (reason) {
+                  return contentReader.cancel(reason);
+              }
+          });
+          headers['Content-Type'] = 'multipart/form-data; boundary=' + boundary;
+      }
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              headers[key] = httpHeaders[key];
+          }
+      }
+
+      var timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      var timer = timeout > 0 ? $wnd.setTimeout(function () {
+          timedOut = true;
+          abortController.abort();
+      }, timeout) : null;
+
+      $wnd.fetch(url, {
+          method: rawMethod != null ? rawMethod : 'POST',
+          headers: headers,
+          body: body,
+          duplex: 'half',
+          signal: abortController.signal
+      }).then(function (response) {
+          return response.text().then(function (serverData) {
+              $wnd.clearTimeout(timer);
+              self.@org.docstr.gwt.uploader.client.Uploader::uploadSuccessEventCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;Ljava/lang/String;)(
+                  @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                      file,
+                      -4     // File.Status.COMPLETE
+                  ),
+                  response.status + "",
+                  serverData
+              );
+          });
+      }).then(null, function (e) {
+          $wnd.clearTimeout(timer);
+          if (timedOut) {
+              self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+                  @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                      file,
+                      -3      // File.Status.ERROR
+                  ),
+                  -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+                  "Upload Timed Out"
+              );
+          } else if (e && e.name == 'AbortError') {
+              self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+                  @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                      file,
+                      -5      // File.Status.CANCELLED
+                  ),
+                  -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+                  "Upload Aborted"
+              );
+          } else if (bytesPulled == 0) {
+              // e.g. streaming request bodies require HTTP/2, which the server may not speak
+              self.@org.docstr.gwt.uploader.client.Uploader::streamingUploadRejectedCallback(Lorg/docstr/gwt/uploader/client/File;)(file);
+          } else {
+              self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+                  @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                      file,
+                      -3      // File.Status.ERROR
+                  ),
+                  -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+                  String(e)
+              );
+          }
+      });
+
+      // Cancelling the upload aborts the controller, just like an XMLHttpRequest
+      return abortController;
+  }-*/;
+
+  private static native JavaScriptObject nativeGetRawMetadata(JavaScriptObject file,
+                                                             JavaScriptObject postParams) /*-{
+      var metadata = {};
+      metadata['file_name'] = file.name;
+      if (file.lastModified) {
+          metadata['last_modified'] = file.lastModified;
+      }
+      if (file.uploadBlob) {
+          metadata['original_size'] = file.size;
+      }
+      if (file.contentHash) {
+          metadata['content_hash'] = file.contentHash;
+      }
+      if (file.relativePath || file.webkitRelativePath) {
+          metadata['relative_path'] = file.relativePath || file.webkitRelativePath;
+      }
+      if (postParams != null) {
+          for (var key in postParams) {
+              metadata[key] = postParams[key];
+          }
+      }
+      return metadata;
+  }-*/;
+
+  private static native String nativeAppendQueryString(String url, JavaScriptObject params) /*-{
+      var query = [];
+      for (var key in params) {
+          query.push(encodeURIComponent(key) + '=' + encodeURIComponent(params[key]));
+      }
+      return url + (url.indexOf('?') < 0 ? '?' : '&') + query.join('&');
+  }-*/;
+
+  private static native JavaScriptObject nativeGetMetadataHeaders(JavaScriptObject metadata) /*-{
+      var fixedHeaders = {
+          file_name: 'X-File-Name',
+          last_modified: 'X-File-Last-Modified',
+          original_size: 'X-Original-Size',
+          content_hash: 'X-Content-Hash',
+          relative_path: 'X-File-Path'
+      };
+      var headers = {};
+      for (var key in metadata) {
+          headers[fixedHeaders[key] || 'X-Param-' + key] = encodeURIComponent(metadata[key]);
+      }
+      return headers;
+  }-*/;
+
+  private String getAjaxUploadURL() {
+    return this.ajaxUploadURL != null ? this.ajaxUploadURL : this.uploadURL;
+  }
+
+  private String getFilePostName() {
+    return this.filePostName != null ? this.filePostName : "Filedata";
+  }
+
+  private static String createUploadId() {
+    return Long.toHexString(System.currentTimeMillis()) + "-"
+           + Integer.toHexString((int) (Math.random() * Integer.MAX_VALUE));
+  }
+
+  private void startChunkUploads(ChunkedUpload chunkedUpload) {
+    File file = chunkedUpload.getFile();
+    JavaScriptObject postParams =
+        this.postParams != null ? this.postParams.getJavaScriptObject() : null;
+    JavaScriptObject httpHeaders =
+        this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null;
+
+    while (chunkedUpload.hasMoreChunks()
+           && chunkedUpload.getRequestsInFlight() < getConcurrentChunksLimit()
+           && hasBandwidth()) {
+      double offset = chunkedUpload.getNextOffset();
+      if (this.objectStorageInitiateURL != null) {
+        // The parts were presigned up front, so their size can't change along the way
+        double length = chunkedUpload.getNextLength(nativeGetPropertyAsDouble(file, "partSize"));
+        reserveBandwidth(length);
+        int part = chunkedUpload.nextPart(length);
+        chunkedUpload.addRequest(part, nativeStartObjectStoragePartUpload(file, part, offset,
+                                                                          length));
+        continue;
+      }
+      double length =
+          chunkedUpload.getNextLength(getPacedRequestSize(getNextChunkSize(file)));
+      reserveBandwidth(length);
+      int part = chunkedUpload.nextPart(length);
+      chunkedUpload.addRequest(part,
+                               nativeStartAjaxChunkUpload(file, chunkedUpload.getUploadId(), part,
+                                                          offset, length, getAjaxUploadURL(),
+                                                          getFilePostName(), postParams,
+                                                          httpHeaders));
+    }
+  }
+
+  private double getNextChunkSize(JavaScriptObject nativeFile) {
+    // The moving average speed is measured across all of the chunks of the file that are in
+    // flight at once, so each of them only gets its share of it (and it's in bits per second)
+    double bytesPerSecond = nativeFile.<File>cast().getMovingAverageSpeed() / 8
+                            / getConcurrentChunksLimit();
+    if (this.targetChunkDuration <= 0 || bytesPerSecond <= 0
+        || Double.isInfinite(bytesPerSecond) || Double.isNaN(bytesPerSecond)) {
+      return this.chunkSize;
+    }
+    double chunkSize = Math.floor(bytesPerSecond * this.targetChunkDuration / 1000.0);
+    return Math.min(this.maxChunkSize, Math.max(this.minChunkSize, chunkSize));
+  }
+
+  private native JavaScriptObject nativeStartAjaxChunkUpload(JavaScriptObject file,
+                                                             String uploadId, int part,
+                                                             double offset, double length,
+                                                             String url, String filePostName,
+                                                             JavaScriptObject postParams,
+                                                             JavaScriptObject httpHeaders) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+
+      xhr.upload.addEventListener('progress', function (e) {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;ID)(
+              file,
+              part,
+              Math.min(e.loaded, length));
+      }, false);
+      xhr.addEventListener('load', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkCompleteEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;Ljava/lang/String;)(
+              file,
+              part,
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              part,
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              part,
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open('POST', url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              part,
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+
+      // Keep the original file name on the chunk so the server sees the same part as usual
+      var blob = file.uploadBlob || file;
+      var formData = new FormData();
+      formData.append(filePostName, blob.slice(offset, offset + length), file.name);
+
+      // Append on any post params
+      if (postParams != null) {
+          for (var key in postParams) {
+              formData.append(key, postParams[key]);
+          }
+      }
+
+      // Let the server know where this chunk belongs
+      formData.append('upload_id', uploadId);
+      formData.append('chunk_index', part);
+      formData.append('chunk_offset', offset);
+      formData.append('chunk_size', length);
+      formData.append('total_size', blob.size);
+      if (file.uploadBlob) {
+          formData.append('original_size', file.size);
+      }
+      if (file.contentEncoding) {
+          formData.append('content_encoding', file.contentEncoding);
+      }
+      if (file.contentHash) {
+          formData.append('content_hash', file.contentHash);
+      }
+      if (file.relativePath || file.webkitRelativePath) {
+          formData.append('relative_path', file.relativePath || file.webkitRelativePath);
+      }
+
+      xhr.send(formData);
+
+      return xhr;
+  }-*/;
+
+  private native JavaScriptObject nativeStartAjaxChunkCommit(JavaScriptObject file,
+                                                             String uploadId, int partCount,
+                                                             String url,
+                                                             JavaScriptObject postParams,
+                                                             JavaScriptObject httpHeaders) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+
+      xhr.addEventListener('load', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadSuccessEventCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;Ljava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -4     // File.Status.COMPLETE
+              ),
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              partCount,
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              partCount,
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open('POST', url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              partCount,
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+
+      var formData = new FormData();
+
+      // Append on any post params
+      if (postParams != null) {
+          for (var key in postParams) {
+              formData.append(key, postParams[key]);
+          }
+      }
+
+      formData.append('upload_id', uploadId);
+      formData.append('total_size', (file.uploadBlob || file).size);
+      formData.append('chunk_count', partCount);
+      formData.append('upload_commit', 'true');
+      if (file.uploadBlob) {
+          formData.append('original_size', file.size);
+      }
+      if (file.contentEncoding) {
+          formData.append('content_encoding', file.contentEncoding);
+      }
+      if (file.contentHash) {
+          formData.append('content_hash', file.contentHash);
+      }
+      if (file.relativePath || file.webkitRelativePath) {
+          formData.append('relative_path', file.relativePath || file.webkitRelativePath);
+      }
+
+      xhr.send(formData);
+
+      return xhr;
+  }-*/;
+
+  private void uploadChunkProgressEventCallback(File file, int part, double bytesLoaded) {
+    ChunkedUpload chunkedUpload = this.chunkedUploadsById.get(file.getId());
+    if (chunkedUpload == null || file.getStatus() != File.Status.IN_PROGRESS) {
+      return;
+    }
+    chunkedUpload.setBytesLoaded(part, bytesLoaded);
+    uploadProgressEventCallback(file, chunkedUpload.getBytesUploaded(), file.getUploadSize());
+  }
+
+  private void uploadChunkCompleteEventCallback(File file, int part, String responseReceived,
+                                                String serverData) {
+    ChunkedUpload chunkedUpload = this.chunkedUploadsById.get(file.getId());
+    if (chunkedUpload == null || file.getStatus() != File.Status.IN_PROGRESS) {
+      return;
+    }
+
+    if (!isHttpSuccess(responseReceived)) {
+      chunkedUpload.removeRequest(part);
+      failChunkedUpload(chunkedUpload, UploadErrorEvent.ErrorCode.HTTP_ERROR.toInt(),
+                        "Unsuccessful server response code of: " + responseReceived, serverData,
+                        Integer.parseInt(responseReceived));
+      return;
+    }
+
+    chunkedUpload.acknowledge(part);
+    if (!chunkedUpload.isComplete()) {
+      uploadProgressEventCallback(file, chunkedUpload.getBytesUploaded(), file.getUploadSize());
+      startChunkUploads(chunkedUpload);
+    } else if (this.objectStorageInitiateURL != null || this.maxConcurrentChunks > 1) {
+      commitChunkedUpload(chunkedUpload);
+    } else {
+      // The final chunk has been accepted, so treat the response as the response for the file
+      uploadSucceeded(nativeUpdateFileProperties(file, File.Status.COMPLETE.toInt()).<File>cast(),
+                      responseReceived, serverData);
+    }
+  }
+
+  private void commitChunkedUpload(ChunkedUpload chunkedUpload) {
+    File file = chunkedUpload.getFile();
+    int partCount = chunkedUpload.getPartCount();
+    if (this.objectStorageInitiateURL != null) {
+      chunkedUpload.addRequest(partCount, nativeStartObjectStorageComplete(
+          file, partCount, this.objectStorageCompleteURL,
+          this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+          this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null));
+    } else {
+      // The chunks may have arrived in any order, so let the server know it can assemble them
+      chunkedUpload.addRequest(partCount, nativeStartAjaxChunkCommit(
+          file, chunkedUpload.getUploadId(), partCount,
+          this.chunkCommitURL != null ? this.chunkCommitURL : getAjaxUploadURL(),
+          this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+          this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null));
+    }
+  }
+
+  /**
+   * Carry on with a chunked upload that was interrupted by a failure, sending only the chunks the
+   * server hasn't accepted yet (or just the final commit if it has all of them).
+   */
+  private void resumeChunkedUpload(ChunkedUpload chunkedUpload) {
+    this.chunkedUploadsById.put(chunkedUpload.getFile().getId(), chunkedUpload);
+    if (chunkedUpload.isComplete()) {
+      commitChunkedUpload(chunkedUpload);
+    } else {
+      startChunkUploads(chunkedUpload);
+    }
+  }
+
+  /**
+   * Return the interrupted chunked upload of the given file, if it can be carried on by the next
+   * attempt to upload the file.
+   */
+  private ChunkedUpload takeInterruptedChunkedUpload(JavaScriptObject nativeFile) {
+    ChunkedUpload chunkedUpload =
+        this.interruptedChunkedUploadsById.remove(nativeFile.<File>cast().getId());
+    // The file may have been prepared differently this time around (e.g. re-compressed)
+    return chunkedUpload != null
+           && chunkedUpload.getSize() == nativeFile.<File>cast().getUploadSize()
+           ? chunkedUpload : null;
+  }
+
+  private void uploadChunkErrorEventCallback(File file, int part, int errorCode, String message) {
+    ChunkedUpload chunkedUpload = this.chunkedUploadsById.get(file.getId());
+
+    // Ignore the requests we aborted ourselves after another chunk of the file failed
+    if (chunkedUpload != null && chunkedUpload.removeRequest(part)) {
+      failChunkedUpload(chunkedUpload, errorCode, message, null, 0);
+    }
+  }
+
+  private void failChunkedUpload(ChunkedUpload chunkedUpload, int errorCode, String message,
+                                 String serverData, int httpStatus) {
+    // A single failed chunk fails this attempt, so there's no point in sending the others
+    chunkedUpload.abort();
+
+    File file = nativeUpdateFileProperties(
+        chunkedUpload.getFile(),
+        errorCode == UploadErrorEvent.ErrorCode.FILE_CANCELLED.toInt()
+        ? File.Status.CANCELLED.toInt() : File.Status.ERROR.toInt()).cast();
+    uploadErrorEventCallback(file, errorCode, message, serverData, httpStatus);
+  }
+
+  private boolean isBatchable(JavaScriptObject nativeFile) {
+    return this.batchMaxFiles > 1 && !this.resumable && this.objectStorageInitiateURL == null
+           && nativeFile.<File>cast().getSize() <= this.batchMaxFileSize
+           && nativeGetArchiveEntries(nativeFile) == null;
+  }
+
+  private void startBatchUpload() {
+    JsArray<File> files = JavaScriptObject.createArray().cast();
+    double batchSize = 0;
+    while (files.length() < this.batchMaxFiles) {
+      JavaScriptObject nativeFile = getNextQueuedFile();
+      if (nativeFile == null || !isBatchable(nativeFile)
+          || (files.length() > 0
+              && batchSize + nativeFile.<File>cast().getSize() > this.batchMaxSize)) {
+        break;
+      }
+      fireUploadStarted(nativeFile);
+      files.push(nativeFile.<File>cast());
+      batchSize += nativeFile.<File>cast().getSize();
+    }
+
+    reserveBandwidth(batchSize);
+    JavaScriptObject batchRequest =
+        nativeStartBatchUpload(files, getAjaxUploadURL(), getFilePostName(),
+                               this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+                               this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null);
+    this.nativeBatchRequests.add(batchRequest);
+    for (int i = 0; i < files.length(); i++) {
+      this.nativeBatchRequestsByFileId.put(files.get(i).getId(), batchRequest);
+    }
+
+    //need to keep our global stats up to date manually
+    nativeSetProperty(getStats(), IN_PROGRESS, getUploadsInProgress());
+  }
+
+  private native JavaScriptObject nativeStartBatchUpload(JsArray<File> files, String url,
+                                                         String filePostName,
+                                                         JavaScriptObject postParams,
+                                                         JavaScriptObject httpHeaders) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+      var totalSize = 0;
+      for (var i = 0; i < files.length; i++) {
+          totalSize += files[i].size;
+      }
+
+      // The files are sent one after the other, so map the progress of the request onto them
+      xhr.upload.addEventListener('progress', function (e) {
+          var bytesLoaded = e.total > 0 ? e.loaded / e.total * totalSize : 0;
+          var offset = 0;
+          for (var i = 0; i < files.length; i++) {
+              var file = files[i];
+              var fileLoaded = Math.max(0, Math.min(file.size, bytesLoaded - offset));
+              offset += file.size;
+              if (fileLoaded != file.batchBytesLoaded) {
+                  file.batchBytesLoaded = fileLoaded;
+                  self.@org.docstr.gwt.uploader.client.Uploader::uploadProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;DD)(
+                      file,
+                      fileLoaded,
+                      file.size);
+              }
+          }
+      }, false);
+      xhr.addEventListener('load', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadBatchCompleteEventCallback(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JsArray;Ljava/lang/String;Ljava/lang/String;)(
+              xhr,
+              files,
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadBatchErrorEventCallback(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JsArray;ILjava/lang/String;)(
+              xhr,
+              files,
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadBatchErrorEventCallback(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JsArray;ILjava/lang/String;)(
+              xhr,
+              files,
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open('POST', url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadBatchErrorEventCallback(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JsArray;ILjava/lang/String;)(
+              xhr,
+              files,
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+
+      var formData = new FormData();
+
+      // Append on any post params
+      if (postParams != null) {
+          for (var key in postParams) {
+              formData.append(key, postParams[key]);
+          }
+      }
+      formData.append('batch_size', files.length);
+
+      for (var i = 0; i < files.length; i++) {
+          formData.append('relative_path',
+              files[i].relativePath || files[i].webkitRelativePath || files[i].name);
+          formData.append(filePostName, files[i], files[i].name);
+      }
+
+      xhr.send(formData);
+
+      return xhr;
+  }-*/;
+
+  private void uploadBatchCompleteEventCallback(JavaScriptObject batchRequest, JsArray<File> files,
+                                                String responseReceived, String serverData) {
+    this.nativeBatchRequests.remove(batchRequest);
+
+    if (!isHttpSuccess(responseReceived)) {
+      for (int i = 0; i < files.length(); i++) {
+        failBatchedFile(files.get(i), UploadErrorEvent.ErrorCode.HTTP_ERROR.toInt(),
+                        "Unsuccessful server response code of: " + responseReceived, serverData,
+                        Integer.parseInt(responseReceived));
+      }
+      return;
+    }
+
+    JsArray<JavaScriptObject> results = nativeParseBatchResults(serverData);
+    for (int i = 0; i < files.length(); i++) {
+      File file = files.get(i);
+      if (this.nativeBatchRequestsByFileId.remove(file.getId()) == null) {
+        // The file was cancelled while the batch was being uploaded
+        continue;
+      }
+
+      JavaScriptObject result = results != null && i < results.length() ? results.get(i) : null;
+      if (result == null) {
+        failBatchedFile(file, UploadErrorEvent.ErrorCode.UPLOAD_FAILED.toInt(),
+                        "The server's response holds no result for the file", serverData, 0);
+        continue;
+      }
+      String status = nativeGetPropertyAsString(result, "status");
+      uploadSuccessEventCallback(
+          nativeUpdateFileProperties(file, File.Status.COMPLETE.toInt()).<File>cast(),
+          status != null ? status : "200", nativeGetPropertyAsString(result, "data"));
+    }
+  }
+
+  private void uploadBatchErrorEventCallback(JavaScriptObject batchRequest, JsArray<File> files,
+                                             int errorCode, String message) {
+    this.nativeBatchRequests.remove(batchRequest);
+    for (int i = 0; i < files.length(); i++) {
+      failBatchedFile(files.get(i), errorCode, message, null, 0);
+    }
+  }
+
+  private void failBatchedFile(File file, int errorCode, String message, String serverData,
+                               int httpStatus) {
+    // Files cancelled while the batch was being uploaded have already been completed
+    if (this.nativeBatchRequestsByFileId.remove(file.getId()) != null) {
+      uploadErrorEventCallback(
+          nativeUpdateFileProperties(
+              file,
+              errorCode == UploadErrorEvent.ErrorCode.FILE_CANCELLED.toInt()
+              ? File.Status.CANCELLED.toInt() : File.Status.ERROR.toInt()).<File>cast(),
+          errorCode, message, serverData, httpStatus);
+    }
+  }
+
+  private static native JsArray<JavaScriptObject> nativeParseBatchResults(String serverData) /*-{
+      try {
+          var results = JSON.parse(serverData);
+          return results instanceof Array ? results : null;
+      } catch (e) {
+          return null;
+      }
+  }-*/;
+
+  private void startObjectStorageUpload(JavaScriptObject nativeFile) {
+    // The multipart upload of an earlier attempt is carried on rather than initiated again
+    ChunkedUpload interruptedUpload = takeInterruptedChunkedUpload(nativeFile);
+    if (interruptedUpload != null) {
+      resumeChunkedUpload(interruptedUpload);
+      return;
+    }
+
+    double size = nativeFile.<File>cast().getUploadSize();
+    double partSize = ChunkedUpload.getObjectStoragePartSize(size, this.chunkSize);
+    nativeSetProperty(nativeFile, "partSize", partSize);
+
+    this.nativeXMLHttpRequestsById.put(
+        nativeFile.<File>cast().getId(),
+        nativeStartObjectStorageInitiate(nativeFile, this.objectStorageInitiateURL, partSize,
+                                         ChunkedUpload.getPartCount(size, partSize),
+                                         this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+                                         this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null
+        )
+    );
+  }
+
+  private void objectStorageInitiatedCallback(File file, String responseReceived,
+                                              String serverData) {
+    // The upload may have been cancelled while it was being initiated
+    if (this.nativeXMLHttpRequestsById.remove(file.getId()) == null
+        || file.getStatus() != File.Status.IN_PROGRESS) {
+      return;
+    }
+
+    if (!isHttpSuccess(responseReceived)) {
+      uploadErrorEventCallback(
+          nativeUpdateFileProperties(file, File.Status.ERROR.toInt()).<File>cast(),
+          UploadErrorEvent.ErrorCode.HTTP_ERROR.toInt(),
+          "Unsuccessful server response code of: " + responseReceived, serverData,
+          Integer.parseInt(responseReceived));
+      return;
+    }
+
+    String uploadId = nativeParseObjectStorageUpload(file, serverData);
+    if (uploadId == null) {
+      uploadErrorEventCallback(
+          nativeUpdateFileProperties(file, File.Status.ERROR.toInt()).<File>cast(),
+          UploadErrorEvent.ErrorCode.UPLOAD_FAILED.toInt(),
+          "Invalid response from the initiate URL", serverData, 0);
+      return;
+    }
+
+    ChunkedUpload chunkedUpload = new ChunkedUpload(file, file.getUploadSize(), uploadId);
+    this.chunkedUploadsById.put(file.getId(), chunkedUpload);
+    startChunkUploads(chunkedUpload);
+  }
+
+  private static native String nativeParseObjectStorageUpload(JavaScriptObject file,
+                                                             String serverData) /*-{
+      try {
+          var upload = JSON.parse(serverData);
+          if (!upload.uploadId || !upload.partUrls
+              || upload.partUrls.length < Math.ceil(file.objectStorageSize / file.partSize)) {
+              return null;
+          }
+          file.objectStorageUpload = upload;
+          file.partETags = [];
+          return upload.uploadId;
+      } catch (e) {
+          return null;
+      }
+  }-*/;
+
+  private native JavaScriptObject nativeStartObjectStorageInitiate(JavaScriptObject file,
+                                                                   String url, double partSize,
+                                                                   int partCount,
+                                                                   JavaScriptObject postParams,
+                                                                   JavaScriptObject httpHeaders) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+      var blob = file.uploadBlob || file;
+      file.objectStorageSize = blob.size;
+
+      xhr.addEventListener('load', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::objectStorageInitiatedCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;Ljava/lang/String;)(
+              file,
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -3      // File.Status.ERROR
+              ),
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -5      // File.Status.CANCELLED
+              ),
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open('POST', url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -3      // File.Status.ERROR
+              ),
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+
+      xhr.setRequestHeader('Content-Type', 'application/json');
+
+      var metadata = {};
+      if (postParams != null) {
+          for (var key in postParams) {
+              metadata[key] = postParams[key];
+          }
+      }
+      if (file.uploadBlob) {
+          metadata['original_size'] = file.size;
+      }
+      if (file.contentEncoding) {
+          metadata['content_encoding'] = file.contentEncoding;
+      }
+      if (file.contentHash) {
+          metadata['content_hash'] = file.contentHash;
+      }
+      if (file.relativePath || file.webkitRelativePath) {
+          metadata['relative_path'] = file.relativePath || file.webkitRelativePath;
+      }
+
+      xhr.send(JSON.stringify({
+          fileName: file.name,
+          fileSize: blob.size,
+          contentType: (file.contentEncoding ? file.type : blob.type) || 'application/octet-stream',
+          partSize: partSize,
+          partCount: partCount,
+          metadata: metadata
+      }));
+
+      return xhr;
+  }-*/;
+
+  private native JavaScriptObject nativeStartObjectStoragePartUpload(JavaScriptObject file,
+                                                                     int part, double offset,
+                                                                     double length) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+      var blob = file.uploadBlob || file;
+
+      xhr.upload.addEventListener('progress', function (e) {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;ID)(
+              file,
+              part,
+              Math.min(e.loaded, length));
+      }, false);
+      xhr.addEventListener('load', function () {
+          // The object store identifies each of the parts it has received by their ETag
+          var etag = xhr.getResponseHeader('ETag');
+          if (xhr.status >= 200 && xhr.status < 300 && !etag) {
+              return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+                  file,
+                  part,
+                  -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+                  "The ETag response header of the object store isn't accessible (check its CORS configuration)"
+              )
+          }
+          file.partETags[part] = etag;
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkCompleteEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;Ljava/lang/String;)(
+              file,
+              part,
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              part,
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              part,
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open('PUT', file.objectStorageUpload.partUrls[part], true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              part,
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+
+      xhr.send(blob.slice(offset, offset + length));
+
+      return xhr;
+  }-*/;
+
+  private native JavaScriptObject nativeStartObjectStorageComplete(JavaScriptObject file,
+                                                                   int partCount, String url,
+                                                                   JavaScriptObject postParams,
+                                                                   JavaScriptObject httpHeaders) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+
+      xhr.addEventListener('load', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadSuccessEventCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;Ljava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -4     // File.Status.COMPLETE
+              ),
+              xhr.status + "",
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              partCount,
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              partCount,
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open('POST', url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadChunkErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;IILjava/lang/String;)(
+              file,
+              partCount,
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+
+      xhr.setRequestHeader('Content-Type', 'application/json');
+
+      var parts = [];
+      for (var i = 0; i < partCount; i++) {
+          parts.push({partNumber: i + 1, etag: file.partETags[i]});
+      }
+      var metadata = {};
+      if (postParams != null) {
+          for (var key in postParams) {
+              metadata[key] = postParams[key];
+          }
+      }
+
+      xhr.send(JSON.stringify({
+          uploadId: file.objectStorageUpload.uploadId,
+          key: file.objectStorageUpload.key,
+          parts: parts,
+          metadata: metadata
+      }));
+
+      return xhr;
+  }-*/;
+
+  private static final String TUS_RESUME_KEY_PREFIX = "gwt-uploader.tus.";
+
+  private void startResumableUpload(JavaScriptObject nativeFile) {
+    String resumeKey = nativeGetResumeKey(nativeFile);
+    String uploadLocation = nativeGetStoredItem(resumeKey);
+    if (uploadLocation != null) {
+      // Find out how much of the file the server already has before sending anything
+      nativeSetProperty(nativeFile, "uploadLocation", uploadLocation);
+      startResumableRequest(nativeFile, "HEAD", uploadLocation, 0, 0);
+    } else {
+      startResumableRequest(nativeFile, "POST", getAjaxUploadURL(), 0, 0);
+    }
+  }
+
+  private void startResumableRequest(JavaScriptObject nativeFile, String method, String url,
+                                     double offset, double length) {
+    this.nativeXMLHttpRequestsById.put(
+        nativeFile.<File>cast().getId(),
+        nativeStartResumableRequest(nativeFile, method, url, offset, length,
+                                    this.postParams != null ? this.postParams.getJavaScriptObject() : null,
+                                    this.httpHeaders != null ? this.httpHeaders.getJavaScriptObject() : null
+        )
+    );
+  }
+
+  private void startResumableAppend(JavaScriptObject nativeFile, double offset) {
+    if (!hasBandwidth()) {
+      this.pacedResumableOffsetsById.put(nativeFile.<File>cast().getId(), offset);
+      return;
+    }
+    double remaining = nativeFile.<File>cast().getUploadSize() - offset;
+    double length = getPacedRequestSize(
+        this.chunkSize > 0 ? Math.min(getNextChunkSize(nativeFile), remaining) : remaining);
+    reserveBandwidth(length);
+    startResumableRequest(nativeFile, "PATCH", nativeGetPropertyAsString(nativeFile, "uploadLocation"),
+                          offset, length);
+  }
+
+  // See: https://tus.io/protocols/resumable-upload
+  private native JavaScriptObject nativeStartResumableRequest(JavaScriptObject file, String method,
+                                                              String url, double offset,
+                                                              double length,
+                                                              JavaScriptObject postParams,
+                                                              JavaScriptObject httpHeaders) /*-{
+
+      var self = this;
+      var xhr = new XMLHttpRequest();
+      var blob = file.uploadBlob || file;
+
+      if (method == 'PATCH') {
+          xhr.upload.addEventListener('progress', function (e) {
+              return self.@org.docstr.gwt.uploader.client.Uploader::uploadProgressEventCallback(Lorg/docstr/gwt/uploader/client/File;DD)(
+                  file,
+                  offset + Math.min(e.loaded, length),
+                  blob.size);
+          }, false);
+      }
+      xhr.addEventListener('load', function () {
+          // The upload resource may be returned relative to the creation endpoint
+          var location = xhr.getResponseHeader('Location');
+          return self.@org.docstr.gwt.uploader.client.Uploader::resumableRequestCompleteEventCallback(Lorg/docstr/gwt/uploader/client/File;Ljava/lang/String;DDLjava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)(
+              file,
+              method,
+              offset,
+              length,
+              xhr.status + "",
+              location ? new URL(location, url).href : null,
+              xhr.getResponseHeader('Upload-Offset'),
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('error', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -3      // File.Status.ERROR
+              ),
+              -250, // UploadErrorEvent.ErrorCode.UPLOAD_FAILED
+              xhr.responseText
+          )
+      }, false);
+      xhr.addEventListener('abort', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -5      // File.Status.CANCELLED
+              ),
+              -280, // UploadErrorEvent.ErrorCode.FILE_CANCELLED
+              "Upload Aborted"
+          )
+      }, false);
+
+      xhr.open(method, url, true);
+
+      xhr.timeout = self.@org.docstr.gwt.uploader.client.Uploader::requestTimeout;
+      xhr.addEventListener('timeout', function () {
+          return self.@org.docstr.gwt.uploader.client.Uploader::uploadErrorEventCallback(Lorg/docstr/gwt/uploader/client/File;ILjava/lang/String;)(
+              @org.docstr.gwt.uploader.client.Uploader::nativeUpdateFileProperties(Lcom/google/gwt/core/client/JavaScriptObject;I)(
+                  file,
+                  -3      // File.Status.ERROR
+              ),
+              -220, // UploadErrorEvent.ErrorCode.IO_ERROR
+              "Upload Timed Out"
+          )
+      }, false);
+      xhr.setRequestHeader('Tus-Resumable', '1.0.0');
+
+      // Inject any http headers
+      if (httpHeaders != null) {
+          for (var key in httpHeaders) {
+              xhr.setRequestHeader(key, httpHeaders[key]);
+          }
+      }
+
+      var encode = function (value) {
+          return btoa(unescape(encodeURIComponent(value + '')));
+      };
+
+      if (method == 'POST') {
+          // Creation extension, with the post params passed along as upload metadata
+          var metadata = ['filename ' + encode(file.name)];
+          if (file.type) {
+              metadata.push('filetype ' + encode(file.type));
+          }
+          if (file.uploadBlob) {
+              metadata.push('originalsize ' + encode(file.size));
+          }
+          if (file.contentEncoding) {
+              metadata.push('contentencoding ' + encode(file.contentEncoding));
+          }
+          if (file.contentHash) {
+              metadata.push('contenthash ' + encode(file.contentHash));
+          }
+          if (file.relativePath || file.webkitRelativePath) {
+              metadata.push('relativepath ' + encode(file.relativePath || file.webkitRelativePath));
+          }
+          if (postParams != null) {
+              for (var key in postParams) {
+                  metadata.push(key + ' ' + encode(postParams[key]));
+              }
+          }
+          xhr.setRequestHeader('Upload-Length', blob.size);
+          xhr.setRequestHeader('Upload-Metadata', metadata.join(','));
+          xhr.send(null);
+      } else if (method == 'PATCH') {
+          xhr.setRequestHeader('Upload-Offset', offset);
+          xhr.setRequestHeader('Content-Type', 'application/offset+octet-stream');
+          xhr.send(blob.slice(offset, offset + length));
+      } else {
+          xhr.send(null);
+      }
+
+      return xhr;
+  }-*/;
+
+  private void resumableRequestCompleteEventCallback(File file, String method, double offset,
+                                                     double length, String responseReceived,
+                                                     String uploadLocation, String uploadOffset,
+                                                     String serverData) {
+    // The upload may have been cancelled while waiting for the server to respond
+    if (file.getStatus() != File.Status.IN_PROGRESS) {
+      return;
+    }
+
+    String resumeKey = nativeGetResumeKey(file);
+    if ("POST".equals(method)) {
+      if ("201".equals(responseReceived) && uploadLocation != null) {
+        nativeSetProperty(file, "uploadLocation", uploadLocation);
+        nativeSetStoredItem(resumeKey, uploadLocation);
+        startResumableAppend(file, 0);
+        return;
+      }
+    } else if ("HEAD".equals(method)) {
+      offset = ResumableOffsets.parseOffset(uploadOffset);
+      if (("200".equals(responseReceived) || "204".equals(responseReceived)) && offset >= 0) {
+        if (offset < file.getUploadSize()) {
+          startResumableAppend(file, offset);
+        } else {
+          nativeRemoveStoredItem(resumeKey);
+          uploadSucceeded(nativeUpdateFileProperties(file, File.Status.COMPLETE.toInt()).<File>cast(),
+                          responseReceived, serverData);
+        }
+      } else {
+        // The server no longer knows about the upload (e.g. it expired), so start a new one
+        nativeRemoveStoredItem(resumeKey);
+        startResumableRequest(file, "POST", getAjaxUploadURL(), 0, 0);
+      }
+      return;
+    } else if ("204".equals(responseReceived) || isHttpSuccess(responseReceived)) {
+      offset = ResumableOffsets.getConfirmedOffset(uploadOffset, offset, length);
+      if (offset < file.getUploadSize()) {
+        startResumableAppend(file, offset);
+      } else {
+        nativeRemoveStoredItem(resumeKey);
+        uploadSucceeded(nativeUpdateFileProperties(file, File.Status.COMPLETE.toInt()).<File>cast(),
+                        responseReceived, serverData);
+      }
+      return;
+    }
+
+    nativeUpdateFileProperties(file, File.Status.ERROR.toInt());
+    uploadErrorEventCallback(file, UploadErrorEvent.ErrorCode.HTTP_ERROR.toInt(),
+                             "Unsuccessful server response code of: " + responseReceived,
+                             serverData, Integer.parseInt(responseReceived));
+  }
+
+  private static native String nativeGetResumeKey(JavaScriptObject file) /*-{
+      return @org.docstr.gwt.uploader.client.Uploader::TUS_RESUME_KEY_PREFIX
+          + file.name + '.' + file.size + '.' + (file.lastModified || 0)
+          + (file.uploadBlob ? '.' + file.uploadBlob.size : '');
+  }-*/;
+
+  private static native String nativeGetStoredItem(String key) /*-{
+      try {
+          return $wnd.localStorage ? $wnd.localStorage.getItem(key) : null;
+      } catch (e) {
+          // Local storage may be disabled (e.g. private browsing), so just don't resume
+          return null;
+      }
+  }-*/;
+
+  private static native void nativeSetStoredItem(String key, String value) /*-{
+      try {
+          if ($wnd.localStorage) {
+              $wnd.localStorage.setItem(key, value);
+          }
+      } catch (e) {
+          // Purposefully ignored, the upload simply won't be resumable across page loads
+      }
+  }-*/;
+
+  private static native void nativeRemoveStoredItem(String key) /*-{
+      try {
+          if ($wnd.localStorage) {
+              $wnd.localStorage.removeItem(key);
+          }
+      } catch (e) {
+          // Purposefully ignored
+      }
+  }-*/;
+
+  /**
+   * Cancel the file upload for a specific file and remove from the queue.
+   *
+   * @param fileId            The fileId to cancel
+   * @param triggerErrorEvent if true, an uploadError event will be issued
+   */
+  public void cancelUpload(String fileId, boolean triggerErrorEvent) {
+      // Files packed into an archive can only be cancelled along with the whole archive
+      JavaScriptObject archive = this.nativeArchivesByEntryId.get(fileId);
+      if (archive != null) {
+        fileId = archive.<File>cast().getId();
+      }
+
+      // Files waiting to be retried are no longer in the queue, so just make sure they stay out
+      RetryTimer retryTimer = this.retryTimersById.remove(fileId);
+      if (retryTimer != null) {
+        retryTimer.cancel();
+        this.interruptedChunkedUploadsById.remove(fileId);
+        nativeUpdateFileProperties(retryTimer.file, File.Status.CANCELLED.toInt());
+        JsArray<File> entries = nativeGetArchiveEntries(retryTimer.file);
+        if (entries != null) {
+          for (int i = 0; i < entries.length(); i++) {
+            File entry =
+                nativeUpdateFileProperties(entries.get(i), File.Status.CANCELLED.toInt()).cast();
+            uploadCancelled(entry, triggerErrorEvent);
+            uploadCompleteEventCallback(entry);
+          }
+        } else {
+          uploadCancelled(retryTimer.file, triggerErrorEvent);
+        }
+        return;
+      }
+
+      JavaScriptObject nativeFile = this.fileQueue.get(fileId);
+      if (nativeFile != null) {
+
+        boolean cancelledActiveUpload = false;
+
+        // If the file being cancelled was currently in the process of being uploaded, then cancel
+        // its XMLHttpRequest as well
+        JavaScriptObject xmlHttpRequest = this.nativeXMLHttpRequestsById.get(fileId);
+        ChunkedUpload chunkedUpload = this.chunkedUploadsById.get(fileId);
+        JavaScriptObject batchRequest = this.nativeBatchRequestsByFileId.remove(fileId);
+        if (batchRequest != null) {
+          cancelledActiveUpload = true;
+          // The rest of the batch carries on, unless there's nothing left worth sending
+          if (!this.nativeBatchRequestsByFileId.containsValue(batchRequest)) {
+            nativeAbortXMLHttpRequest(batchRequest);
+          }
+        } else if (this.nativeFilesPreparingById.remove(fileId) != null) {
+          cancelledActiveUpload = true;
+          getWorkerPool().cancel(fileId);
+        } else if (chunkedUpload != null
+            && nativeFile.<File>cast().getStatus() == File.Status.IN_PROGRESS) {
+          cancelledActiveUpload = true;
+          chunkedUpload.abort();
+        } else if (xmlHttpRequest != null
+            && nativeFile.<File>cast().getStatus() == File.Status.IN_PROGRESS) {
+          try {
+            cancelledActiveUpload = true;
+            nativeAbortXMLHttpRequest(xmlHttpRequest);
+          } catch (Throwable t) {
+            // Purposefully ignoring any problems that may occur when aborting the XMLHttpRequest
+            GWT.log(t.getMessage());
+          }
+        }
+
+        nativeUpdateFileProperties(nativeFile, File.Status.CANCELLED.toInt());
+
+        // The files packed into an archive are cancelled (and completed) on their own, as the
+        // archive itself is never exposed to the app
+        JsArray<File> entries = nativeGetArchiveEntries(nativeFile);
+        if (entries != null) {
+          for (int i = 0; i < entries.length(); i++) {
+            File entry =
+                nativeUpdateFileProperties(entries.get(i), File.Status.CANCELLED.toInt()).cast();
+            uploadCancelled(entry, triggerErrorEvent);
+            uploadCompleteEventCallback(entry);
+          }
+        } else {
+          uploadCancelled(nativeFile.<File>cast(), triggerErrorEvent);
+        }
+
+        // If we just cancelled the upload that was in progress then we need to explicitly invoke
+        // the complete handler after the file cancellation (in order to let the next potential
+        // upload continue)
+        if (cancelledActiveUpload) {
+          uploadCompleteEventCallback(nativeFile.<File>cast());
+        } else {
+          // If we're not cancelling the file upload that was in progress, then we need to handle
+          // pulling it out of the internal queue and statistics on our own
+          this.fileQueue.remove(nativeFile.<File>cast().getId());
+          removeFromQueueProgress(nativeFile.<File>cast());
+          nativeSetProperty(getStats(), FILES_QEUED, this.fileQueue.size());
+          nativeSetProperty(getStats(), IN_PROGRESS, getUploadsInProgress());
+        }
+      }
+  }
+
+  private void uploadCancelled(File file, boolean triggerErrorEvent) {
+    // Keep the global stats up to date
+    nativeSetProperty(getStats(), "upload_cancelled", getStats().getUploadsCancelled() + 1);
+
+    if (triggerErrorEvent) {
+      // CPD-OFF
+      nativeSetProperty(getStats(), UPLOAD_ERRORS, getStats().getUploadErrors() + 1);
+      // CPD-ON
+      if (this.uploadErrorHandler != null) {
+        this.uploadErrorHandler.onUploadError(
+            new UploadErrorEvent(file,
+                                 UploadErrorEvent.ErrorCode.FILE_CANCELLED
+                                     .toInt(), "File Cancelled", null
+            )
+        );
+      }
+    }
+  }
+
+  private static native void nativeAbortXMLHttpRequest(JavaScriptObject xmlHttpRequest) /*-{
+      xmlHttpRequest.abort();
+  }-*/;
+
+  /**
+   * Cancel the first file in the queue.
+   */
+  public void cancelUpload() {
+      if (!this.fileQueue.isEmpty()) {
+        cancelUpload(this.fileQueue.getFirst().getId());
+      }
+  }
+
+  /**
+   * Cancel the the file with the supplied id. An uploadError event will be
+   * issued.
+   *
+   * @param fileId The fileId to cancel
+   */
+  public void cancelUpload(String fileId) {
+      cancelUpload(fileId, true);
+  }
+
+  /**
+   * Cancel the first file in the queue.
+   *
+   * @param triggerErrorEvent if true, an uploadError event will be issued
+   */
+  public void cancelUpload(boolean triggerErrorEvent) {
+      if (!this.fileQueue.isEmpty()) {
+        cancelUpload(this.fileQueue.getFirst().getId(), triggerErrorEvent);
+      }
+  }
+
+  /**
+   * Returns true if the browser appears to support an HTML5 style upload (via the XMLHttpRequest
+   * Level 2 API).
+   * <p>
+   * Logic adapted from:
+   * http://blog.new-bamboo.co.uk/2012/01/10/ridiculously-simple-ajax-uploads-with-formdata
+   *
+   * @return 'true' if an HTML5 style upload can be used otherwise false
+   */
+  public static boolean isAjaxUploadWithProgressEventsSupported() {
+    return isFileAPISupported() && isAjaxUploadProgressEventsSupported() && isFormDataSupported();
+  }
+
+  private static native boolean isFileAPISupported() /*-{
+      var inputElement = document.createElement('INPUT');
+      inputElement.type = 'file';
+      return 'files' in inputElement;
+  }-*/;
+
+  private static native boolean isAjaxUploadProgressEventsSupported() /*-{
+      var xhr = new XMLHttpRequest();
+      return !!(xhr && ('upload' in xhr) && ('onprogress' in xhr.upload));
+  }-*/;
+
+  private static native boolean isFormDataSupported() /*-{
+      return !!window.FormData;
+  }-*/;
+
+  private final FileQueue fileQueue = new FileQueue();
+
+  /**
+   * Returns a read-only view of the files which have been added to the queue and have not yet
+   * completed (including the files currently being uploaded), in the order they were queued in.
+   *
+   * @return FileQueue
+   */
+  public FileQueue getFileQueue() {
+    return this.fileQueue;
+  }
+
+  private FileUpload fileUpload;
+
+  @Override
+  protected void onLoad() {
+    if (this.loaded) {
+      return;
+    }
+    this.loaded = true;
+
+    // Make sure our entire panel fits the size that they wanted for the button
+    if (this.buttonWidth >= 0) {
+      this.setWidth(this.buttonWidth + "px");
+    }
+    if (this.buttonHeight >= 0) {
+      this.setHeight(this.buttonHeight + "px");
     }
 
     if (isAjaxUploadWithProgressEventsSupported()) {
@@ -1284,74 +3982,312 @@ public class Uploader extends AbsolutePanel {
    * @param files An array of native file references to be added to the queue.
    */
   public void addFilesToQueue(JsArray<?> files) {
-    int filesQueued = 0;
+    queueFiles(new FileQueueing(files, null));
+  }
 
-    if (files != null) {
-      for (int i = 0; i < files.length(); i++) {
-        JavaScriptObject nativeFile = files.get(i);
-
-        // Make sure our maximum allowable queue size upload limit has not been exceeded
-        if (this.nativeFilesQueued.size() >= this.fileQueueLimit) {
-          fileQueueErrorEventCallback(nativeFile.<File>cast(),
-                                      FileQueueErrorEvent.ErrorCode.QUEUE_LIMIT_EXCEEDED.toInt(),
-                                      "Exceeded file queue size limit of "
-                                      + this.fileQueueLimit
-          );
+  private void queueFiles(FileQueueing fileQueueing) {
+    if (this.queueSliceDuration > 0) {
+      Scheduler.get().scheduleIncremental(fileQueueing);
+    } else {
+      while (fileQueueing.execute()) {
+        // Queue all of the files right away
+      }
+    }
+  }
+
+  private int queueSliceDuration = 0;
+  private boolean queueSliceAutoStart = false;
+
+  /**
+   * Convenience method for queueing large selections of files (e.g. a dropped folder with tens of
+   * thousands of files in it) incrementally.  Instead of validating and queueing all of the files
+   * in one go, which blocks the browser until every file queued event has been handled, the files
+   * are queued in slices of at most the given number of milliseconds each, letting the browser
+   * render and respond to the user in between.  The file dialog complete event is fired once the
+   * last slice has been queued.
+   *
+   * @param sliceDuration The number of milliseconds to spend queueing files before yielding to
+   *                      the browser, or 0 to queue all of the selected files at once (default: 0).
+   * @param autoStart     If true, {@link #startUpload()} is invoked after each slice (and after
+   *                      each batch of files found in a dropped folder, see
+   *                      {@link #addDroppedFilesToQueue(NativeEvent)}), so that the files start
+   *                      uploading as soon as the first of them have been queued rather than once
+   *                      all of them have been.
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setIncrementalQueueing(int sliceDuration, boolean autoStart) {
+    this.queueSliceDuration = Math.max(0, sliceDuration);
+    this.queueSliceAutoStart = autoStart;
+    return this;
+  }
+
+  /**
+   * Validates and queues a selection of files, one slice at a time when run by the scheduler.
+   */
+  private class FileQueueing implements Scheduler.RepeatingCommand {
+
+    private final JsArray<?> files;
+    private final JavaScriptObject walk;
+    private int index = 0;
+    private int filesQueued = 0;
+
+    FileQueueing(JsArray<?> files, JavaScriptObject walk) {
+      this.files = files;
+      this.walk = walk;
+      if (walk == null) {
+        // Dropped folders are counted once for the whole walk, rather than once per batch
+        selectionsQueueing++;
+      }
+    }
+
+    @Override
+    public boolean execute() {
+      Duration duration = new Duration();
+      while (files != null && index < files.length()) {
+        if (!queueFile(files.get(index++))) {
+          index = files.length();
+          if (walk != null) {
+            // Stop walking the dropped folders, as no more files can be queued
+            nativeSetProperty(walk, "stopped", 1);
+          }
           break;
         }
-        if (this.fileUploadLimit > 0 && this.totalFilesUploaded >= this.fileUploadLimit) {
-
-          // Keep the global stats up to date
-          nativeSetProperty(getStats(), UPLOAD_ERRORS, getStats().getUploadErrors() + 1);
-
-          if (this.uploadErrorHandler != null) {
-            this.uploadErrorHandler
-                .onUploadError(
-                    new UploadErrorEvent(nativeFile.<File>cast(),
-                                         UploadErrorEvent.ErrorCode.UPLOAD_LIMIT_EXCEEDED
-                                             .toInt(), "Exceeded upload limit of "
-                                                       + this.fileUploadLimit, null
-                    )
-                );
-          }
-
+        if (queueSliceDuration > 0 && duration.elapsedMillis() >= queueSliceDuration) {
           break;
         }
+      }
 
-        // Ensure the file size can be determined and that the file has some contents
-        if (nativeFile.<File>cast().getSize() <= 0) {
-          fileQueueErrorEventCallback(nativeFile.<File>cast(),
-                                      FileQueueErrorEvent.ErrorCode.ZERO_BYTE_FILE.toInt(),
-                                      "File is zero bytes and cannot be uploaded.");
-          continue;
-        }
+      if (queueSliceAutoStart && filesQueued > 0) {
+        startUpload();
+      }
+      if (files != null && index < files.length()) {
+        return true;
+      }
 
-        // Make sure the file doesn't exceed the configured size limit
-        if (exceedsFileSizeLimit(nativeFile)) {
-          fileQueueErrorEventCallback(nativeFile.<File>cast(),
-                                      FileQueueErrorEvent.ErrorCode.FILE_EXCEEDS_SIZE_LIMIT.toInt(),
-                                      "File size exceeds allowed limit.");
-          continue;
-        }
+      if (walk != null) {
+        nativeSetProperty(walk, "filesSelected",
+                          nativeGetPropertyAsDouble(walk, "filesSelected") + files.length());
+        nativeSetProperty(walk, "filesQueued",
+                          nativeGetPropertyAsDouble(walk, "filesQueued") + filesQueued);
+        nativeSetProperty(walk, "batchesQueueing",
+                          nativeGetPropertyAsDouble(walk, "batchesQueueing") - 1);
+        droppedItemsQueuedCallback(walk);
+        return false;
+      }
+
+      selectionsQueueing--;
+
+      // If requested, notify the app each time the user has finished selecting a bunch of files
+      if (fileDialogCompleteHandler != null) {
+        fileDialogCompleteHandler
+            .onFileDialogComplete(new FileDialogCompleteEvent(files != null ? files.length() : 0,
+                                                              filesQueued, fileQueue.size()));
+      }
+      startPendingArchiveUpload();
+      return false;
+    }
+
+    /**
+     * Validate the given file and add it to the queue.
+     *
+     * @return 'false' if no more files can be queued, otherwise 'true'.
+     */
+    private boolean queueFile(JavaScriptObject nativeFile) {
+      // Make sure our maximum allowable queue size upload limit has not been exceeded
+      if (fileQueue.size() >= fileQueueLimit) {
+        fileQueueErrorEventCallback(nativeFile.<File>cast(),
+                                    FileQueueErrorEvent.ErrorCode.QUEUE_LIMIT_EXCEEDED.toInt(),
+                                    "Exceeded file queue size limit of "
+                                    + fileQueueLimit
+        );
+        return false;
+      }
+      if (fileUploadLimit > 0 && totalFilesUploaded >= fileUploadLimit) {
 
-        nativeSetProperty(nativeFile, "id", getNextFileId());
+        // Keep the global stats up to date
+        nativeSetProperty(getStats(), UPLOAD_ERRORS, getStats().getUploadErrors() + 1);
+
+        if (uploadErrorHandler != null) {
+          uploadErrorHandler
+              .onUploadError(
+                  new UploadErrorEvent(nativeFile.<File>cast(),
+                                       UploadErrorEvent.ErrorCode.UPLOAD_LIMIT_EXCEEDED
+                                           .toInt(), "Exceeded upload limit of "
+                                                     + fileUploadLimit, null
+                  )
+              );
+        }
 
-        filesQueued++;
+        return false;
+      }
 
-        // Track each of the files that still need to be uploaded
-        addFileToQueue(nativeFile);
+      // Ensure the file size can be determined and that the file has some contents
+      if (nativeFile.<File>cast().getSize() <= 0) {
+        fileQueueErrorEventCallback(nativeFile.<File>cast(),
+                                    FileQueueErrorEvent.ErrorCode.ZERO_BYTE_FILE.toInt(),
+                                    "File is zero bytes and cannot be uploaded.");
+        return true;
+      }
 
+      // Make sure the file doesn't exceed the configured size limit
+      if (exceedsFileSizeLimit(nativeFile)) {
+        fileQueueErrorEventCallback(nativeFile.<File>cast(),
+                                    FileQueueErrorEvent.ErrorCode.FILE_EXCEEDS_SIZE_LIMIT.toInt(),
+                                    "File size exceeds allowed limit.");
+        return true;
       }
+
+      nativeSetProperty(nativeFile, "id", getNextFileId());
+
+      filesQueued++;
+
+      // Track each of the files that still need to be uploaded
+      addFileToQueue(nativeFile);
+      return true;
+    }
+  }
+
+  /**
+   * Adds the files and folders that the user dropped on the application during a GWT drop event
+   * to the queue.  Unlike {@link #getDroppedFiles(NativeEvent)}, which only returns the files that
+   * were dropped, the contents of any dropped folders are added to the queue as well (including
+   * the contents of their sub folders), with the path of each file relative to the dropped folder
+   * available via {@link File#getRelativePath()} and sent to the server along with the file.  E.g.
+   * <pre><code>
+   * final Uploader uploader = new Uploader();
+   * dropFilesArea.addDropHandler(new DropHandler() {
+   *    public void onDrop(DropEvent event) {
+   *       event.preventDefault();
+   *       uploader.addDroppedFilesToQueue(event.getNativeEvent());
+   *    }
+   * });
+   * </code></pre>
+   * Folders are walked in the background and their files are added to the queue batch by batch
+   * as they are found, so large folders can start uploading (see
+   * {@link #setIncrementalQueueing(int, boolean)}) long before all of their files have been
+   * found.  The file dialog complete event is fired once the last of the files has been queued.
+   * In browsers that don't support dropping folders only the dropped files are queued.
+   *
+   * @param event The native event provided by GWT that was fired when the drop occurred
+   */
+  public void addDroppedFilesToQueue(NativeEvent event) {
+    // The walk may finish straight away, so it has to be counted before it's started
+    this.selectionsQueueing++;
+    if (!nativeWalkDroppedItems(event)) {
+      this.selectionsQueueing--;
+      addFilesToQueue(getDroppedFiles(event));
     }
+  }
+
+  private void droppedFilesFoundCallback(JavaScriptObject walk, JsArray<?> files) {
+    nativeSetProperty(walk, "batchesQueueing",
+                      nativeGetPropertyAsDouble(walk, "batchesQueueing") + 1);
+    queueFiles(new FileQueueing(files, walk));
+  }
 
-    // If requested, notify the app each time the user has finished selecting a bunch of files
+  private void droppedItemsQueuedCallback(JavaScriptObject walk) {
+    // Only report the dropped files once all of them have been found and queued
+    if (!nativeGetPropertyAsBoolean(walk, "walked")
+        || nativeGetPropertyAsDouble(walk, "batchesQueueing") > 0) {
+      return;
+    }
+    this.selectionsQueueing--;
     if (this.fileDialogCompleteHandler != null) {
-      this.fileDialogCompleteHandler
-          .onFileDialogComplete(new FileDialogCompleteEvent(files != null ? files.length() : 0,
-                                                            filesQueued, this.nativeFilesQueued.size()));
+      this.fileDialogCompleteHandler.onFileDialogComplete(
+          new FileDialogCompleteEvent((int) nativeGetPropertyAsDouble(walk, "filesSelected"),
+                                      (int) nativeGetPropertyAsDouble(walk, "filesQueued"),
+                                      this.fileQueue.size()));
+    }
+    startPendingArchiveUpload();
+  }
+
+  private void startPendingArchiveUpload() {
+    // The upload was requested while the files were still being queued
+    if (this.archiveStartPending && this.selectionsQueueing == 0) {
+      this.archiveStartPending = false;
+      startUpload();
     }
   }
 
+  // See: https://developer.mozilla.org/en-US/docs/Web/API/FileSystemDirectoryReader/readEntries
+  private native boolean nativeWalkDroppedItems(NativeEvent event) /*-{
+      var items = event.dataTransfer && event.dataTransfer.items;
+      if (!items || !items.length || !items[0].webkitGetAsEntry) {
+          return false;
+      }
+
+      var self = this;
+      var walk = {filesSelected: 0, filesQueued: 0, batchesQueueing: 0, pending: 0};
+      var found = function (files) {
+          if (files.length && !walk.stopped) {
+              self.@org.docstr.gwt.uploader.client.Uploader::droppedFilesFoundCallback(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JsArray;)(walk, files);
+          }
+      };
+      var done = function () {
+          if (--walk.pending == 0) {
+              walk.walked = true;
+              self.@org.docstr.gwt.uploader.client.Uploader::droppedItemsQueuedCallback(Lcom/google/gwt/core/client/JavaScriptObject;)(walk);
+          }
+      };
+      var walkDirectory = function (directory) {
+          var reader = directory.createReader();
+          walk.pending++;
+          // Each call returns the next batch of entries, until an empty batch signals the end
+          var read = function () {
+              reader.readEntries(function (entries) {
+                  if (!entries.length || walk.stopped) {
+                      done();
+                      return;
+                  }
+                  var files = [];
+                  var filesPending = 1;
+                  var fileDone = function () {
+                      if (--filesPending == 0) {
+                          found(files);
+                          read();
+                      }
+                  };
+                  for (var i = 0; i < entries.length; i++) {
+                      var entry = entries[i];
+                      if (entry.isDirectory) {
+                          walkDirectory(entry);
+                      } else if (entry.isFile) {
+                          filesPending++;
+                          (function (entry) {
+                              entry.file(function (file) {
+                                  file.relativePath = entry.fullPath.replace(/^\//, '');
+                                  files.push(file);
+                                  fileDone();
+                              }, fileDone);
+                          })(entry);
+                      }
+                  }
+                  fileDone();
+              }, done);
+          };
+          read();
+      };
+
+      // The entries have to be retrieved while the drop event is still being handled
+      var files = [];
+      var directories = [];
+      for (var i = 0; i < items.length; i++) {
+          var entry = items[i].kind == 'file' ? items[i].webkitGetAsEntry() : null;
+          if (entry && entry.isDirectory) {
+              directories.push(entry);
+          } else if (items[i].kind == 'file' && items[i].getAsFile()) {
+              files.push(items[i].getAsFile());
+          }
+      }
+      walk.pending++;
+      found(files);
+      for (var i = 0; i < directories.length; i++) {
+          walkDirectory(directories[i]);
+      }
+      done();
+      return true;
+  }-*/;
+
   /**
    * A convenience method that can be used to extract the files that a user dropped
    * on the application during a GWT drop event.  Useful when adding drag/drop support
@@ -1377,15 +4313,26 @@ public class Uploader extends AbsolutePanel {
   }-*/;
 
   private void addFileToQueue(JavaScriptObject nativeFile) {
+    // The queue totals cover the files added since the queue was last empty (archives are made up
+    // of files which have already been counted)
+    if (nativeGetArchiveEntries(nativeFile) == null) {
+      if (this.fileQueue.isEmpty() && this.retryTimersById.isEmpty()) {
+        resetQueueProgress();
+      }
+      addToQueueProgress(nativeFile.<File>cast());
+    }
+
     // Track each of the files that still need to be uploaded
-    this.nativeFilesQueued.add(nativeFile);
-    this.nativeFilesQueuedById.put(nativeFile.<File>cast().getId(), nativeFile);
+    this.fileQueue.add(nativeFile);
 
     // need to keep the global stats up to date manually
-    nativeSetProperty(getStats(), FILES_QEUED, this.nativeFilesQueued.size());
+    nativeSetProperty(getStats(), FILES_QEUED, this.fileQueue.size());
 
-    // If requested, notify the app each time a new file is added to the queue
-    if (this.fileQueuedHandler != null) {
+    // If requested, notify the app each time a new file is added to the queue (archives are
+    // made up of files which have already been queued)
+    if (nativeGetArchiveEntries(nativeFile) != null) {
+      nativeUpdateFileProperties(nativeFile, File.Status.QUEUED.toInt());
+    } else if (this.fileQueuedHandler != null) {
       this.fileQueuedHandler.onFileQueued(
           new FileQueuedEvent(
               nativeUpdateFileProperties(nativeFile,
@@ -1446,6 +4393,84 @@ public class Uploader extends AbsolutePanel {
   }
 
   private boolean uploadProgressEventCallback(File file, double bytesComplete, double bytesTotal) {
+    if (this.progressEventInterval == 0) {
+      return fireUploadProgress(file, bytesComplete, bytesTotal);
+    }
+
+    // Only the latest progress of each file is delivered once the interval has passed
+    nativeSetProperty(file, "pendingBytesComplete", bytesComplete);
+    nativeSetProperty(file, "pendingBytesTotal", bytesTotal);
+    this.pendingProgressFilesById.put(file.getId(), file);
+    if (!this.progressEventsScheduled) {
+      this.progressEventsScheduled = true;
+      if (this.progressEventInterval > 0 || !nativeRequestAnimationFrame(this)) {
+        this.progressEventTimer.schedule(Math.max(this.progressEventInterval, 16));
+      }
+    }
+    return true;
+  }
+
+  private int progressEventInterval = 0;
+  private boolean progressEventsScheduled = false;
+
+  // The files with progress that has not yet been delivered, in the order they made progress in
+  private LinkedHashMap<String, File> pendingProgressFilesById = new LinkedHashMap<String, File>();
+
+  private final Timer progressEventTimer = new Timer() {
+    @Override
+    public void run() {
+      firePendingProgressEvents();
+    }
+  };
+
+  /**
+   * Convenience method for limiting how often upload progress events are delivered.  By default
+   * an upload progress event is fired for every progress event raised by the browser, which can
+   * add up to hundreds of events per second when many files are being uploaded at once, each of
+   * them typically updating the page.  When an interval is set, only the latest progress of each
+   * file is kept and all of the files which made progress are reported together at most once per
+   * interval.  The upload success and upload error events of a file are always preceded by its
+   * latest progress.
+   *
+   * @param progressEventInterval The minimum number of milliseconds between upload progress
+   *                              events, -1 to deliver them at most once per animation frame of
+   *                              the browser (i.e. right before the page is next rendered), or 0
+   *                              to deliver every progress event as it happens (default: 0).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setProgressEventInterval(int progressEventInterval) {
+    this.progressEventInterval = Math.max(-1, progressEventInterval);
+    return this;
+  }
+
+  private void firePendingProgressEvents() {
+    this.progressEventsScheduled = false;
+    ArrayList<File> files = new ArrayList<File>(this.pendingProgressFilesById.values());
+    this.pendingProgressFilesById.clear();
+    for (File file : files) {
+      firePendingProgressEvent(file);
+    }
+  }
+
+  private void firePendingProgressEvent(File file) {
+    if (file.getStatus() == File.Status.IN_PROGRESS) {
+      fireUploadProgress(file, nativeGetPropertyAsDouble(file, "pendingBytesComplete"),
+                         nativeGetPropertyAsDouble(file, "pendingBytesTotal"));
+    }
+  }
+
+  // See: https://developer.mozilla.org/en-US/docs/Web/API/Window/requestAnimationFrame
+  private static native boolean nativeRequestAnimationFrame(Uploader self) /*-{
+      if (!$wnd.requestAnimationFrame) {
+          return false;
+      }
+      $wnd.requestAnimationFrame(function () {
+          self.@org.docstr.gwt.uploader.client.Uploader::firePendingProgressEvents()();
+      });
+      return true;
+  }-*/;
+
+  private boolean fireUploadProgress(File file, double bytesComplete, double bytesTotal) {
 
     //we need to do our own math to keep the file statistics up to date.
       long now = System.currentTimeMillis();
@@ -1457,7 +4482,14 @@ public class Uploader extends AbsolutePanel {
       double elapsedTime = (now - nativeGetPropertyAsDouble(file, "startTime")) / 1000.0;
       double currentSpeed = (bytesSinceLastEvent * 8) / timeSinceLastEvent;
       if (!Double.isInfinite(currentSpeed) && !Double.isNaN(currentSpeed)) {
-        nativeAddValueToArray(file, "movingAverageHistory", currentSpeed);
+        getSpeedStatistics(file).add(currentSpeed);
+      }
+      if (this.concurrencyController != null && bytesSinceLastEvent >= 0
+          && !nativeGetPropertyAsBoolean(file, "deduplicated")
+          && !nativeGetPropertyAsBoolean(file, "archived")
+          && this.concurrencyController.onProgress(bytesSinceLastEvent, timeSinceLastEvent * 1000,
+                                                   now, isConcurrencySaturated())) {
+        increaseConcurrency();
       }
       nativeSetProperty(file, "bytesSinceLastEvent", bytesSinceLastEvent);
       nativeSetProperty(file, "previousBytesComplete", bytesComplete);
@@ -1470,9 +4502,7 @@ public class Uploader extends AbsolutePanel {
                         (bytesComplete * 8) / elapsedTime); // Bits per seconds
       nativeSetProperty(file, "currentSpeed", currentSpeed); // Bytes per seconds since last event
       nativeSetProperty(file, "movingAverageSpeed",
-                        calculateMovingAverage(nativeGetPropertyAsArray(file,
-                                                                        "movingAverageHistory"))
-      ); // Bytes per second
+                        getSpeedStatistics(file).getMovingAverage()); // Bits per second
       nativeSetProperty(file, "percentUploaded",
                         bytesComplete / bytesTotal * 100); // Bytes per seconds
       nativeSetProperty(file, "sizeUploaded", bytesComplete); // Bytes uploaded so far
@@ -1481,10 +4511,236 @@ public class Uploader extends AbsolutePanel {
                         (bytesTotal - bytesComplete) / (bytesComplete / elapsedTime));
 
 
-    return this.uploadProgressHandler == null
-           || this.uploadProgressHandler
-               .onUploadProgress(
-                   new UploadProgressEvent(file, (long) bytesComplete, (long) bytesTotal));
+    // Progress is measured in the bytes sent over the wire, so map it back onto the original
+    // file if its contents were compressed before being uploaded.  Files compressed while they
+    // are streamed keep track of the bytes read from them instead, as their compressed size is
+    // only known once they have been sent in full
+    double originalBytesComplete = bytesComplete;
+    double originalBytesTotal = bytesTotal;
+    if (nativeGetPropertyAsBoolean(file, "streamCompressed")) {
+      originalBytesComplete = Math.min(nativeGetPropertyAsDouble(file, "streamBytesRead"),
+                                       file.getUploadSize());
+      originalBytesTotal = file.getUploadSize();
+    }
+    if (file.getUploadSize() != file.getSize() && originalBytesTotal > 0) {
+      originalBytesComplete =
+          Math.floor(originalBytesComplete / originalBytesTotal * file.getSize());
+      originalBytesTotal = file.getSize();
+    }
+
+    JsArray<File> entries = nativeGetArchiveEntries(file);
+    if (entries != null) {
+      // Let the files packed into the archive know how much of them has been sent.  The files are
+      // stored in order, so only the ones from the first file which hasn't been sent in full up
+      // to the one currently being sent need to be visited
+      int cursor = (int) nativeGetPropertyAsDouble(file, "archiveCursor");
+      // Progress may go backwards, e.g. when a chunk has to be sent again
+      while (cursor > 0 && originalBytesComplete
+                           < nativeGetPropertyAsDouble(entries.get(cursor - 1), "archiveOffset")
+                             + entries.get(cursor - 1).getSize()) {
+        cursor--;
+      }
+      for (int i = cursor; i < entries.length(); i++) {
+        File entry = entries.get(i);
+        double entryBytesComplete = Math.max(0, Math.min(
+            entry.getSize(),
+            originalBytesComplete - nativeGetPropertyAsDouble(entry, "archiveOffset")));
+        double previousBytesComplete = nativeGetPropertyAsDouble(entry, "archiveBytesComplete");
+        if (i > cursor && entryBytesComplete <= 0 && previousBytesComplete <= 0) {
+          break;
+        }
+        if (entryBytesComplete != previousBytesComplete) {
+          nativeSetProperty(entry, "archiveBytesComplete", entryBytesComplete);
+          fireUploadProgress(entry, entryBytesComplete, entry.getSize());
+        }
+        if (i == cursor && entryBytesComplete >= entry.getSize()) {
+          cursor++;
+        }
+      }
+      nativeSetProperty(file, "archiveCursor", cursor);
+      return true;
+    }
+
+    updateQueueProgress(file, originalBytesComplete);
+
+    boolean response = this.uploadProgressHandler == null
+                       || this.uploadProgressHandler
+                           .onUploadProgress(
+                               new UploadProgressEvent(file, (long) originalBytesComplete,
+                                                       (long) originalBytesTotal,
+                                                       (long) bytesComplete, (long) bytesTotal));
+    if (this.queueProgressHandler != null) {
+      this.queueProgressHandler.onQueueProgress(
+          new QueueProgressEvent((long) getStats().getBytesUploaded(),
+                                 (long) getStats().getBytesQueued(),
+                                 getStats().getCurrentSpeed(), getStats().getTimeRemaining()));
+    }
+    return response;
+  }
+
+  private static final int QUEUE_SPEED_SAMPLE_PERIOD = 1000;
+  private static final double QUEUE_SPEED_SMOOTHING_FACTOR = 0.5;
+
+  private double queueSpeedSampleStartTime = 0;
+  private double queueSpeedSampleBytes = 0;
+
+  private void resetQueueProgress() {
+    nativeSetProperty(getStats(), BYTES_QUEUED, 0);
+    nativeSetProperty(getStats(), BYTES_UPLOADED, 0);
+    nativeSetProperty(getStats(), CURRENT_SPEED, 0);
+    nativeSetProperty(getStats(), TIME_REMAINING, 0);
+    this.queueSpeedSampleStartTime = 0;
+    this.queueSpeedSampleBytes = 0;
+  }
+
+  private void addToQueueProgress(File file) {
+    if (nativeGetPropertyAsBoolean(file, "queueProgressCounted")) {
+      return;
+    }
+    nativeSetProperty(file, "queueProgressCounted", 1);
+    nativeSetProperty(file, "queueBytesUploaded", 0);
+    nativeSetProperty(getStats(), BYTES_QUEUED, getStats().getBytesQueued() + file.getSize());
+    updateTimeRemaining();
+  }
+
+  /**
+   * Take a file which won't be uploaded after all (e.g. because it was cancelled or failed) out of
+   * the queue totals.
+   */
+  private void removeFromQueueProgress(File file) {
+    if (!nativeGetPropertyAsBoolean(file, "queueProgressCounted")) {
+      return;
+    }
+    nativeSetProperty(file, "queueProgressCounted", 0);
+    nativeSetProperty(getStats(), BYTES_QUEUED, getStats().getBytesQueued() - file.getSize());
+    nativeSetProperty(getStats(), BYTES_UPLOADED, getStats().getBytesUploaded()
+                                                  - nativeGetPropertyAsDouble(file,
+                                                                              "queueBytesUploaded"));
+    updateTimeRemaining();
+  }
+
+  private void updateQueueProgress(File file, double bytesComplete) {
+    if (!nativeGetPropertyAsBoolean(file, "queueProgressCounted")) {
+      return;
+    }
+    if (nativeGetPropertyAsBoolean(file, "deduplicated")) {
+      // Nothing was sent for files the server already had (they're counted as bytes saved
+      // instead), so they neither count towards the queue totals nor the combined speed
+      removeFromQueueProgress(file);
+      return;
+    }
+    double bytes = bytesComplete - nativeGetPropertyAsDouble(file, "queueBytesUploaded");
+    nativeSetProperty(file, "queueBytesUploaded", bytesComplete);
+    nativeSetProperty(getStats(), BYTES_UPLOADED, getStats().getBytesUploaded() + bytes);
+
+    // The combined speed is sampled over fixed periods, as the progress events of the individual
+    // files are too far apart to measure it on their own
+    double now = System.currentTimeMillis();
+    if (this.queueSpeedSampleStartTime <= 0) {
+      this.queueSpeedSampleStartTime = now;
+    }
+    this.queueSpeedSampleBytes += Math.max(0, bytes);
+    sampleQueueSpeed(now);
+
+    // Keep sampling while no progress is being made at all, so that the speed drops (and the
+    // time remaining rises) when the uploads stall
+    if (!this.queueSpeedTimer.isRunning()) {
+      this.queueSpeedTimer.scheduleRepeating(QUEUE_SPEED_SAMPLE_PERIOD);
+    }
+  }
+
+  private final Timer queueSpeedTimer = new Timer() {
+    @Override
+    public void run() {
+      if (getUploadsInProgress() <= 0) {
+        cancel();
+        return;
+      }
+      sampleQueueSpeed(System.currentTimeMillis());
+    }
+  };
+
+  private void sampleQueueSpeed(double now) {
+    if (this.queueSpeedSampleStartTime > 0
+        && now - this.queueSpeedSampleStartTime >= QUEUE_SPEED_SAMPLE_PERIOD) {
+      double speed = this.queueSpeedSampleBytes * 8 * 1000 / (now - this.queueSpeedSampleStartTime);
+      double previousSpeed = getStats().getCurrentSpeed();
+      speed = previousSpeed > 0
+              ? previousSpeed + QUEUE_SPEED_SMOOTHING_FACTOR * (speed - previousSpeed)
+              : speed;
+      // Stop decaying once nothing meaningful is left of the speed
+      nativeSetProperty(getStats(), CURRENT_SPEED, speed >= 1 ? speed : 0);
+      this.queueSpeedSampleStartTime = now;
+      this.queueSpeedSampleBytes = 0;
+    }
+    updateTimeRemaining();
+  }
+
+  private void updateTimeRemaining() {
+    double speed = getStats().getCurrentSpeed();
+    nativeSetProperty(getStats(), TIME_REMAINING, speed > 0
+        ? Math.max(0, getStats().getBytesQueued() - getStats().getBytesUploaded()) * 8 / speed
+        : 0);
+  }
+
+  private int speedWindowSize = SpeedStatistics.DEFAULT_WINDOW_SIZE;
+  private double speedSmoothingFactor = 0;
+
+  // The speed measurements of the files being uploaded, keyed by file id
+  private HashMap<String, SpeedStatistics> speedStatisticsById =
+      new HashMap<String, SpeedStatistics>();
+
+  /**
+   * Convenience method for configuring how the moving average speed of each file (see
+   * {@link File#getMovingAverageSpeed()}) is calculated.  The speed is measured on every progress
+   * event, and measurements which are more than two standard deviations away from the mean of the
+   * most recent measurements are ignored as outliers.  By default the moving average is the mean
+   * of the remaining measurements in the window, but an exponentially weighted moving average can
+   * be used instead, which reacts more quickly to changes in speed.
+   *
+   * @param windowSize      The number of the most recent speed measurements of each file that are
+   *                        kept (default: 64, minimum: 8).
+   * @param smoothingFactor The weight of each new measurement in an exponentially weighted moving
+   *                        average (e.g. 0.2), or 0 to average the measurements in the window
+   *                        (default: 0).
+   * @return A reference to this {@link Uploader} instance for convenient method chaining.
+   */
+  public Uploader setSpeedAveraging(int windowSize, double smoothingFactor) {
+    this.speedWindowSize = windowSize;
+    this.speedSmoothingFactor = Math.max(0, Math.min(1, smoothingFactor));
+    return this;
+  }
+
+  private SpeedStatistics getSpeedStatistics(File file) {
+    SpeedStatistics speedStatistics = this.speedStatisticsById.get(file.getId());
+    if (speedStatistics == null) {
+      speedStatistics = new SpeedStatistics(this.speedWindowSize, this.speedSmoothingFactor);
+      this.speedStatisticsById.put(file.getId(), speedStatistics);
+    }
+    return speedStatistics;
+  }
+
+  private boolean isConcurrencySaturated() {
+    if (getUploadsInProgress() >= getConcurrentUploadsLimit()) {
+      return true;
+    }
+    for (ChunkedUpload chunkedUpload : this.chunkedUploadsById.values()) {
+      if (chunkedUpload.getRequestsInFlight() >= getConcurrentChunksLimit()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void increaseConcurrency() {
+    nativeSetProperty(getStats(), CONCURRENCY, Math.max(getConcurrentUploadsLimit(),
+                                                        getConcurrentChunksLimit()));
+
+    // Make use of the extra upload slot straight away
+    for (ChunkedUpload chunkedUpload : new ArrayList<ChunkedUpload>(this.chunkedUploadsById.values())) {
+      startChunkUploads(chunkedUpload);
+    }
+    startUpload();
   }
 
   private boolean uploadErrorEventCallback(File file, int errorCode, String message) {
@@ -1492,6 +4748,11 @@ public class Uploader extends AbsolutePanel {
   }
   
   private boolean uploadErrorEventCallback(File file, int errorCode, String message, String serverData) {
+    return uploadErrorEventCallback(file, errorCode, message, serverData, 0);
+  }
+
+  private boolean uploadErrorEventCallback(File file, int errorCode, String message,
+                                           String serverData, int httpStatus) {
     // If the user manually cancelled the file upload earlier (via the cancelUpload() method),
     // then we've already invoked the error handler callback if appropriate.
     if (file.getStatus() == File.Status.CANCELLED) {
@@ -1501,18 +4762,54 @@ public class Uploader extends AbsolutePanel {
     // Keep the global stats up to date
     nativeSetProperty(getStats(), UPLOAD_ERRORS, getStats().getUploadErrors() + 1);
 
-    boolean response;
+    // Any failure (including 429/503 responses) is a sign that we're pushing the server or the
+    // network too hard
+    if (this.concurrencyController != null) {
+      this.concurrencyController.onCongestion(System.currentTimeMillis());
+      nativeSetProperty(getStats(), CONCURRENCY, Math.max(getConcurrentUploadsLimit(),
+                                                          getConcurrentChunksLimit()));
+    }
+
+    File pendingProgressFile = this.pendingProgressFilesById.remove(file.getId());
+    if (pendingProgressFile != null) {
+      firePendingProgressEvent(pendingProgressFile);
+    }
+
+    UploadErrorEvent uploadErrorEvent = new UploadErrorEvent(file, errorCode, message, serverData);
+    boolean response = true;
     try {
-      response = this.uploadErrorHandler == null
-                 || this.uploadErrorHandler
-                     .onUploadError(new UploadErrorEvent(file, errorCode, message, serverData));
+      JsArray<File> entries = nativeGetArchiveEntries(file);
+      if (entries != null) {
+        // Each of the files packed into the archive fails (and completes) on its own
+        for (int i = 0; i < entries.length(); i++) {
+          File entry = nativeUpdateFileProperties(entries.get(i), file.getStatus().toInt()).cast();
+          response = (this.uploadErrorHandler == null
+                      || this.uploadErrorHandler.onUploadError(
+              new UploadErrorEvent(entry, errorCode, message, serverData))) && response;
+          uploadCompleteEventCallback(entry);
+        }
+      } else {
+        response = this.uploadErrorHandler == null
+                   || this.uploadErrorHandler.onUploadError(uploadErrorEvent);
+      }
     } finally {
       // We're running in Ajax/DOM mode so we need to explicitly invoke the complete handler after each file upload error.
+        ChunkedUpload chunkedUpload = this.chunkedUploadsById.get(file.getId());
         try {
           uploadCompleteEventCallback(file);
         } finally {
           // Similarly, we need to handle the requeue error logic manually
-          if (this.requeueOnError && errorCode != File.Status.CANCELLED.toInt()) {
+          if (this.retryPolicy != null) {
+            int attempt = (int) nativeGetPropertyAsDouble(file, "uploadAttempts") + 1;
+            nativeSetProperty(file, "uploadAttempts", attempt);
+            int delay = this.retryPolicy.getRetryDelay(file, attempt,
+                                                       uploadErrorEvent.getErrorCode(), httpStatus);
+            if (delay >= 0) {
+              prepareRetry(file, chunkedUpload);
+              scheduleRetry(file, delay);
+            }
+          } else if (this.requeueOnError && errorCode != File.Status.CANCELLED.toInt()) {
+            prepareRetry(file, chunkedUpload);
             addFileToQueue(file);
           }
         }
@@ -1521,70 +4818,143 @@ public class Uploader extends AbsolutePanel {
     return response;
   }
 
+  // The timers of the files waiting to be returned to the queue by the retry policy
+  private HashMap<String, RetryTimer> retryTimersById = new HashMap<String, RetryTimer>();
+
+  private class RetryTimer extends Timer {
+
+    private final File file;
+
+    RetryTimer(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public void run() {
+      if (Uploader.this.retryTimersById.remove(this.file.getId()) != null) {
+        addFileToQueue(this.file);
+        startUpload();
+      }
+    }
+  }
+
+  private void prepareRetry(File file, ChunkedUpload chunkedUpload) {
+    // The next attempt reuses the upload id and only sends the chunks the server doesn't have
+    if (chunkedUpload != null) {
+      this.interruptedChunkedUploadsById.put(file.getId(), chunkedUpload);
+    }
+
+    // The files packed into an archive can still be cancelled while it waits to be retried
+    JsArray<File> entries = nativeGetArchiveEntries(file);
+    if (entries != null) {
+      for (int i = 0; i < entries.length(); i++) {
+        this.nativeArchivesByEntryId.put(entries.get(i).getId(), file);
+      }
+    }
+  }
+
+  private void scheduleRetry(File file, int delay) {
+    RetryTimer retryTimer = new RetryTimer(file);
+    this.retryTimersById.put(file.getId(), retryTimer);
+    retryTimer.schedule(delay);
+  }
+
   private boolean uploadSuccessEventCallback(File file, String responseReceived,
                                              String serverData) {
     boolean response = false;
 
       // call the success handler if the response code is one of the expected type, otherwise
       // call the error handler
-      if (this.httpSuccess == null) {
-        this.httpSuccess = new long[]{200};
-      }
-      boolean success = false;
-      for (long code : this.httpSuccess) {
-        String codeStr = code + "";
-        if (codeStr.equals(responseReceived)) {
-          success = true;
-        }
+      if (isHttpSuccess(responseReceived)) {
+        response = uploadSucceeded(file, responseReceived, serverData);
+      } else {
+        uploadErrorEventCallback(file, UploadErrorEvent.ErrorCode.HTTP_ERROR.toInt(),
+                         "Unsuccessful server response code of: " + responseReceived, serverData,
+                         Integer.parseInt(responseReceived));
       }
 
-      if (success) {
-        try {
-          // If the user manually cancelled the file upload earlier (via the cancelUpload() method),
-          // then don't allow the success handler to be invoked (but still allow the complete
-          // handler to run)
-          if (file.getStatus() != File.Status.CANCELLED) {
-            this.totalFilesUploaded++;
-
-            // If the file upload was super quick, we may not have gotten any progress events.  So,
-            // let anyone who cares know that we've made it to a 100% successfully with this file
-            uploadProgressEventCallback(file, file.getSize(), file.getSize());
-
-            // Keep the global stats up to date 
-            nativeSetProperty(getStats(), "successful_uploads",
-                              getStats().getSuccessfulUploads() + 1);
-
-            response = this.uploadSuccessHandler == null
-                       || this.uploadSuccessHandler
-                           .onUploadSuccess(
-                               new UploadSuccessEvent(file, serverData, responseReceived));
-          }
-        } finally {
-          // We're running in Ajax/DOM mode so we need to explicitly invoke the complete handler after each file is uploaded
-          // successfully.
-          uploadCompleteEventCallback(file);
+    return response;
+  }
+
+  private boolean uploadSucceeded(File file, String responseReceived, String serverData) {
+    boolean response = false;
+    try {
+      // If the user manually cancelled the file upload earlier (via the cancelUpload() method),
+      // then don't allow the success handler to be invoked (but still allow the complete
+      // handler to run)
+      JsArray<File> entries = nativeGetArchiveEntries(file);
+      if (entries != null && file.getStatus() != File.Status.CANCELLED) {
+        // Each of the files packed into the archive succeeds (and completes) on its own
+        for (int i = 0; i < entries.length(); i++) {
+          response = uploadSucceeded(
+              nativeUpdateFileProperties(entries.get(i), File.Status.COMPLETE.toInt()).<File>cast(),
+              responseReceived, serverData);
         }
-      } else {
-        uploadErrorEventCallback(file, UploadErrorEvent.ErrorCode.HTTP_ERROR.toInt(),
-                         "Unsuccessful server response code of: " + responseReceived, serverData);
+      } else if (file.getStatus() != File.Status.CANCELLED) {
+        this.totalFilesUploaded++;
+        nativeSetProperty(file, "uploadSucceeded", 1);
+
+        // If the file upload was super quick, we may not have gotten any progress events.  So,
+        // let anyone who cares know that we've made it to a 100% successfully with this file
+        this.pendingProgressFilesById.remove(file.getId());
+        fireUploadProgress(file, file.getUploadSize(), file.getUploadSize());
+
+        // Keep the global stats up to date 
+        nativeSetProperty(getStats(), "successful_uploads",
+                          getStats().getSuccessfulUploads() + 1);
+
+        response = this.uploadSuccessHandler == null
+                   || this.uploadSuccessHandler
+                       .onUploadSuccess(
+                           new UploadSuccessEvent(file, serverData, responseReceived));
       }
+    } finally {
+      // We're running in Ajax/DOM mode so we need to explicitly invoke the complete handler after each file is uploaded
+      // successfully.
+      uploadCompleteEventCallback(file);
+    }
 
     return response;
   }
 
+  private boolean isHttpSuccess(String responseReceived) {
+    if (this.httpSuccess == null) {
+      this.httpSuccess = new long[]{200};
+    }
+    for (long code : this.httpSuccess) {
+      String codeStr = code + "";
+      if (codeStr.equals(responseReceived)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private boolean uploadCompleteEventCallback(File file) {
-    if (this.nativeFilesQueued.size() > 0) {
-      final JavaScriptObject nativeFile = this.nativeFilesQueued.get(0);
-      this.nativeFilesQueued.remove(nativeFile);
-      this.nativeFilesQueuedById.remove(nativeFile.<File>cast().getId());
+    // Only the file that actually completed is pulled out of the queue, as other files may
+    // still be in the middle of being uploaded
+    this.fileQueue.remove(file.getId());
+    this.nativeXMLHttpRequestsById.remove(file.getId());
+    this.chunkedUploadsById.remove(file.getId());
+    this.interruptedChunkedUploadsById.remove(file.getId());
+    this.nativeFilesPreparingById.remove(file.getId());
+    this.pacedResumableOffsetsById.remove(file.getId());
+    this.nativeBatchRequestsByFileId.remove(file.getId());
+    this.nativeArchivesByEntryId.remove(file.getId());
+    this.pendingProgressFilesById.remove(file.getId());
+    this.speedStatisticsById.remove(file.getId());
+    if (!nativeGetPropertyAsBoolean(file, "uploadSucceeded")) {
+      removeFromQueueProgress(file);
     }
 
     // Keep the global stats up to date 
-    nativeSetProperty(getStats(), FILES_QEUED, this.nativeFilesQueued.size());
-    nativeSetProperty(getStats(), IN_PROGRESS, 0);
+    nativeSetProperty(getStats(), FILES_QEUED, this.fileQueue.size());
+    nativeSetProperty(getStats(), IN_PROGRESS, getUploadsInProgress());
 
-    return this.uploadCompleteHandler == null || this.uploadCompleteHandler
-        .onUploadComplete(new UploadCompleteEvent(file));
+    // The files packed into an archive have already been completed on their own
+    return nativeGetArchiveEntries(file) != null
+           || this.uploadCompleteHandler == null
+           || this.uploadCompleteHandler.onUploadComplete(new UploadCompleteEvent(file));
   }
 
   private static native JsArray<?> nativeGetSelectedFiles(Element fileInputElement) /*-{
@@ -1608,80 +4978,18 @@ public class Uploader extends AbsolutePanel {
       obj[key] = value;
   }-*/;
 
-  private static native void nativeAddValueToArray(JavaScriptObject obj, String key,
-                                                   double value) /*-{
-      if (!obj[key]) {
-          obj[key] = new Array();
-      }
-      obj[key].push(value);
+  private static native boolean nativeGetPropertyAsBoolean(JavaScriptObject obj, String key) /*-{
+      return !!obj[key];
   }-*/;
 
-  private static native double nativeGetPropertyAsDouble(JavaScriptObject obj, String key) /*-{
-      return obj[key] ? obj[key] : 0.0;
+  private static native String nativeGetPropertyAsString(JavaScriptObject obj, String key) /*-{
+      return obj[key] != null ? obj[key] + "" : null;
   }-*/;
 
-  private static native JsArrayNumber nativeGetPropertyAsArray(JavaScriptObject obj,
-                                                               String key) /*-{
-      return obj[key] ? obj[key] : new Array();
+  private static native double nativeGetPropertyAsDouble(JavaScriptObject obj, String key) /*-{
+      return obj[key] ? obj[key] : 0.0;
   }-*/;
 
-  /**
-   * Implementation of SWFUpload Speed plug-in's moving average calculation based on the
-   * set of data points available ported directly from the original 2.9 implementation.
-   *
-   * @param history An array of values calculated so far
-   * @return The moving average
-   */
-  private static double calculateMovingAverage(JsArrayNumber history) {
-    double[] vals = new double[history.length()];
-    long size = history.length();
-    double sum = 0.0;
-    double mSum = 0.0;
-    long mCount = 0;
-
-    // Check for sufficient data
-    if (size >= 8) {
-      // Clone the array and Calculate sum of the values
-      for (int i = 0; i < size; i++) {
-        vals[i] = history.get(i);
-        sum += vals[i];
-      }
-      double mean = sum / size;
-
-      // Calculate variance for the set
-      double varianceTemp = 0.0;
-      for (int i = 0; i < size; i++) {
-        varianceTemp += Math.pow(vals[i] - mean, 2);
-      }
-      double variance = varianceTemp / size;
-      double standardDev = Math.sqrt(variance);
-
-      // Standardize the Data
-      for (int i = 0; i < size; i++) {
-        vals[i] = (vals[i] - mean) / standardDev;
-      }
-
-      // Calculate the average excluding outliers
-      double deviationRange = 2.0;
-
-      for (int i = 0; i < size; i++) {
-        if (vals[i] <= deviationRange && vals[i] >= -deviationRange) {
-          mCount++;
-          mSum += history.get(i);
-        }
-      }
-
-    } else {
-      // Calculate the average (not enough data points to remove outliers)
-      mCount = size;
-      for (int i = 0; i < size; i++) {
-        mSum += history.get(i);
-      }
-    }
-
-    return mSum / mCount;
-  }
-
   private native void consoleDebug(String msg) /*-{
       $wnd.console.debug(msg);
   }-*/;
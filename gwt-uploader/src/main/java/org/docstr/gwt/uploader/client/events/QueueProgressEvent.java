@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client.events;
+
+/**
+ * Provides access to the combined progress of all of the files in the queue when a
+ * 'queueProgress' event occurs.
+ * This class should not be instantiated directly, but instead you should create a {@link
+ * QueueProgressHandler} and
+ * register it via the {@link org.docstr.gwt.uploader.client
+ * .Uploader#setQueueProgressHandler(QueueProgressHandler)}
+ * method in order to access queue progress events.
+ * <p>
+ * Note that the 'queueProgress' event fires right after each 'uploadProgress' event, and covers
+ * all of the files added to the queue since it was last empty (including the ones which have
+ * already been uploaded, but excluding the ones which were cancelled or failed).
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class QueueProgressEvent {
+
+  private long bytesComplete;
+  private long bytesTotal;
+  private double currentSpeed;
+  private double timeRemaining;
+
+  /**
+   * This constructor is intended for internal use only.  You should not create queue progress
+   * events directly, but instead should register a {@link QueueProgressHandler}.
+   *
+   * @param bytesComplete The number of bytes of the queued files that have been uploaded so far.
+   * @param bytesTotal    The total number of bytes of the queued files.
+   * @param currentSpeed  The combined speed of all of the uploads, in bits per second.
+   * @param timeRemaining The estimated number of seconds until all of the queued files have been
+   *                      uploaded.
+   */
+  public QueueProgressEvent(long bytesComplete, long bytesTotal, double currentSpeed,
+                            double timeRemaining) {
+    this.bytesComplete = bytesComplete;
+    this.bytesTotal = bytesTotal;
+    this.currentSpeed = currentSpeed;
+    this.timeRemaining = timeRemaining;
+  }
+
+  /**
+   * Return the number of bytes of the queued files that have been uploaded so far.
+   *
+   * @return long
+   */
+  public long getBytesComplete() {
+    return bytesComplete;
+  }
+
+  /**
+   * Return the total number of bytes of the queued files.
+   *
+   * @return long
+   */
+  public long getBytesTotal() {
+    return bytesTotal;
+  }
+
+  /**
+   * Return the combined speed of all of the uploads in progress, in bits per second.
+   *
+   * @return double
+   */
+  public double getCurrentSpeed() {
+    return currentSpeed;
+  }
+
+  /**
+   * Return the estimated number of seconds until all of the queued files have been uploaded.
+   *
+   * @return double
+   */
+  public double getTimeRemaining() {
+    return timeRemaining;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client.events;
+
+/**
+ * An interface that can be used as a callback handler when queue progress events are fired by
+ * the Uploader component.  General usage is as follows:
+ * <pre>
+ * uploader.setQueueProgressHandler(new QueueProgressHandler() {
+ *    public boolean onQueueProgress(QueueProgressEvent event) {
+ *       totalProgressBar.setProgress((double) event.getBytesComplete() / event.getBytesTotal());
+ *       return true;
+ *    }
+ * });
+ * </pre>
+ * See the documentation on the {@link QueueProgressEvent} class for more details on the data
+ * available when a queue progress event occurs.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface QueueProgressHandler {
+
+  /**
+   * This method is fired whenever a queue progress event occurs in the Uploader component.
+   * See the {@link QueueProgressEvent} class for more details on the data available when
+   * this event is fired.
+   *
+   * @param queueProgressEvent The details of the event that occurred.
+   * @return The response to send back to the event handler function
+   */
+  public boolean onQueueProgress(QueueProgressEvent queueProgressEvent);
+
+}
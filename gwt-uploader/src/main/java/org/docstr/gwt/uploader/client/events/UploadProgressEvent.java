@@ -35,6 +35,8 @@ public class UploadProgressEvent extends UploadEvent {
 
   private long bytesComplete;
   private long bytesTotal;
+  private long wireBytesComplete;
+  private long wireBytesTotal;
 
   /**
    * This constructor is intended for internal use only.  You should not create progress events
@@ -45,9 +47,26 @@ public class UploadProgressEvent extends UploadEvent {
    * @param bytesTotal Total size of the file being uploaded.
    */
   public UploadProgressEvent(File file, long bytesComplete, long bytesTotal) {
+    this(file, bytesComplete, bytesTotal, bytesComplete, bytesTotal);
+  }
+
+  /**
+   * This constructor is intended for internal use only.  You should not create progress events
+   * directly, but instead should register a {@link UploadProgressHandler}.
+   *
+   * @param file The native javascript object containing the details of the file being uploaded.
+   * @param bytesComplete Bytes of the original file transferred since the uploader process began.
+   * @param bytesTotal Total size of the original file being uploaded.
+   * @param wireBytesComplete Bytes actually sent to the server since the uploader process began.
+   * @param wireBytesTotal Total number of bytes that will actually be sent to the server.
+   */
+  public UploadProgressEvent(File file, long bytesComplete, long bytesTotal,
+                             long wireBytesComplete, long wireBytesTotal) {
     super(file);
     this.bytesComplete = bytesComplete;
     this.bytesTotal = bytesTotal;
+    this.wireBytesComplete = wireBytesComplete;
+    this.wireBytesTotal = wireBytesTotal;
   }
 
   /**
@@ -66,4 +85,24 @@ public class UploadProgressEvent extends UploadEvent {
     return bytesTotal;
   }
 
+  /**
+   * Return the bytes actually sent to the server since the uploader process began.  This only
+   * differs from {@link #getBytesComplete()} when the file is compressed (or otherwise
+   * transformed) before being uploaded.
+   * @return long
+   */
+  public long getWireBytesComplete() {
+    return wireBytesComplete;
+  }
+
+  /**
+   * Return the total number of bytes that will actually be sent to the server.  This only
+   * differs from {@link #getBytesTotal()} when the file is compressed (or otherwise transformed)
+   * before being uploaded.
+   * @return long
+   */
+  public long getWireBytesTotal() {
+    return wireBytesTotal;
+  }
+
 }
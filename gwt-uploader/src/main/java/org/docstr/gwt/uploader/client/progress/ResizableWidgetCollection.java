@@ -15,9 +15,11 @@
  */
 package org.docstr.gwt.uploader.client.progress;
 
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.event.logical.shared.ResizeEvent;
 import com.google.gwt.event.logical.shared.ResizeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Element;
 import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.WindowResizeListener;
@@ -27,10 +29,12 @@ import java.util.Iterator;
 import java.util.Map;
 
 /**
- * A collection of {@link ResizableWidget} that periodically checks the outer
- * dimensions of a widget and redraws it as necessary. Every
- * {@link ResizableWidgetCollection} uses a timer, so consider the cost when
- * adding one.
+ * A collection of {@link ResizableWidget} that watches the outer dimensions of
+ * a widget and redraws it as necessary. Where the browser supports it, every
+ * {@link ResizableWidgetCollection} uses a single ResizeObserver, so widgets
+ * are only checked when they actually change size. Otherwise it falls back to
+ * a timer which periodically checks all of the widgets, so consider the cost
+ * when adding one.
  *
  * Typically, a {@link ResizableWidgetCollection} is only needed if you expect
  * your widgets to resize based on window resizing or other events. Fixed sized
@@ -149,6 +153,20 @@ public class ResizableWidgetCollection
     }
   };
 
+  /**
+   * The ResizeObserver which reports the widgets that changed size, or null if
+   * the browser doesn't support it and the timer has to be used instead.
+   */
+  private JavaScriptObject resizeObserver;
+
+  /**
+   * The resizable widgets this collection is checking, keyed by their
+   * elements, for looking up the widgets reported by the ResizeObserver.
+   */
+  private Map<Element, ResizableWidget>
+      widgetsByElement =
+      new HashMap<Element, ResizableWidget>();
+
   /**
    * A hash map of the resizable widgets this collection is checking.
    */
@@ -213,6 +231,7 @@ public class ResizableWidgetCollection
    * @param resizeCheckingEnabled If the resize checking is enabled or not.
    */
   protected ResizableWidgetCollection(int resizeCheckDelay, boolean resizeCheckingEnabled) {
+    resizeObserver = createResizeObserver();
     setResizeCheckDelay(resizeCheckDelay);
     setResizeCheckingEnabled(resizeCheckingEnabled);
   }
@@ -224,6 +243,10 @@ public class ResizableWidgetCollection
    */
   public void add(ResizableWidget widget) {
     widgets.put(widget, new ResizableWidgetInfo(widget));
+    if (resizeObserver != null) {
+      widgetsByElement.put(widget.getElement(), widget);
+      observe(resizeObserver, widget.getElement());
+    }
   }
 
   /**
@@ -232,22 +255,36 @@ public class ResizableWidgetCollection
    */
   public void checkWidgetSize() {
     for (Map.Entry<ResizableWidget, ResizableWidgetInfo> entry : widgets.entrySet()) {
-      ResizableWidget widget = entry.getKey();
-      ResizableWidgetInfo info = entry.getValue();
-
-      // Call the onResize method only if the widget is attached
-      if (info.updateSizes()) {
-        // Check that the offset width and height are greater than 0.
-        if (info.getOffsetWidth() > 0 && info.getOffsetHeight() > 0
-            && widget.isAttached()) {
-          // Send the client dimensions, which is the space available for
-          // rendering.
-          widget.onResize(info.getOffsetWidth(), info.getOffsetHeight());
-        }
+      checkWidgetSize(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private void checkWidgetSize(ResizableWidget widget, ResizableWidgetInfo info) {
+    // Call the onResize method only if the widget is attached
+    if (info.updateSizes()) {
+      // Check that the offset width and height are greater than 0.
+      if (info.getOffsetWidth() > 0 && info.getOffsetHeight() > 0
+          && widget.isAttached()) {
+        // Send the client dimensions, which is the space available for
+        // rendering.
+        widget.onResize(info.getOffsetWidth(), info.getOffsetHeight());
       }
     }
   }
 
+  /**
+   * Called by the ResizeObserver when the size of an element has changed.
+   *
+   * @param element the element of the resized widget
+   */
+  private void onElementResized(Element element) {
+    ResizableWidget widget = widgetsByElement.get(element);
+    ResizableWidgetInfo info = widget != null ? widgets.get(widget) : null;
+    if (resizeCheckingEnabled && info != null) {
+      checkWidgetSize(widget, info);
+    }
+  }
+
   /**
    * Get the delay between resize checks in milliseconds.
    *
@@ -288,6 +325,10 @@ public class ResizableWidgetCollection
    */
   public void remove(ResizableWidget widget) {
     widgets.remove(widget);
+    if (resizeObserver != null) {
+      widgetsByElement.remove(widget.getElement());
+      unobserve(resizeObserver, widget.getElement());
+    }
   }
 
   /**
@@ -302,13 +343,21 @@ public class ResizableWidgetCollection
   /**
    * Set whether or not resize checking is enabled. If disabled, elements will
    * still be resized on window events, but the timer will not check their
-   * dimensions periodically.
+   * dimensions periodically (and size changes reported by the ResizeObserver
+   * are ignored).
    *
    * @param enabled true to enable the resize checking timer
    */
   public void setResizeCheckingEnabled(boolean enabled) {
     if (enabled && !resizeCheckingEnabled) {
       resizeCheckingEnabled = true;
+      if (resizeObserver != null) {
+        // The observer reports every size change, including the ones caused
+        // by resizing the window, but the ones reported while checking was
+        // disabled have been ignored
+        checkWidgetSize();
+        return;
+      }
       if (windowHandler == null) {
         windowHandler = Window.addResizeHandler(new ResizeHandler() {
           public void onResize(ResizeEvent event) {
@@ -327,6 +376,32 @@ public class ResizableWidgetCollection
     }
   }
 
+  /**
+   * Create a ResizeObserver which reports the elements that changed size to
+   * this collection.
+   *
+   * @return the observer, or null if the browser doesn't support it
+   */
+  private native JavaScriptObject createResizeObserver() /*-{
+      if (!$wnd.ResizeObserver) {
+          return null;
+      }
+      var self = this;
+      return new $wnd.ResizeObserver(function (entries) {
+          for (var i = 0; i < entries.length; i++) {
+              self.@org.docstr.gwt.uploader.client.progress.ResizableWidgetCollection::onElementResized(Lcom/google/gwt/user/client/Element;)(entries[i].target);
+          }
+      });
+  }-*/;
+
+  private static native void observe(JavaScriptObject resizeObserver, Element element) /*-{
+      resizeObserver.observe(element);
+  }-*/;
+
+  private static native void unobserve(JavaScriptObject resizeObserver, Element element) /*-{
+      resizeObserver.unobserve(element);
+  }-*/;
+
   /**
    * Inform the {@link ResizableWidgetCollection} that the size of a widget has
    * changed and already been redrawn. This will prevent the widget from being
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class BandwidthLimiterTest {
+
+  @Test
+  public void startsWithASecondsWorthOfBytes() {
+    BandwidthLimiter limiter = new BandwidthLimiter(1000);
+    assertTrue(limiter.hasTokens(10000));
+    assertEquals(limiter.consume(500, 10000), 0.0);
+    assertTrue(limiter.hasTokens(10000));
+  }
+
+  @Test
+  public void staysInDebtUntilTheBytesHaveBeenPaidBack() {
+    BandwidthLimiter limiter = new BandwidthLimiter(1000);
+    limiter.hasTokens(10000);
+
+    // A request larger than the bucket is let through, leaving a second's worth of debt
+    assertEquals(limiter.consume(2000, 10000), 1001.0);
+    assertFalse(limiter.hasTokens(10000));
+    assertFalse(limiter.hasTokens(10500));
+    assertEquals(limiter.getDelay(10500), 501.0);
+    assertTrue(limiter.hasTokens(11001));
+  }
+
+  @Test
+  public void neverHoldsMoreThanASecondsWorthOfBytes() {
+    BandwidthLimiter limiter = new BandwidthLimiter(1000);
+    limiter.hasTokens(10000);
+
+    // Idling for a minute doesn't allow a burst of a minute's worth of bytes
+    assertEquals(limiter.consume(1500, 70000), 501.0);
+  }
+
+  @Test
+  public void keepsTheDebtWhenTheRateChanges() {
+    BandwidthLimiter limiter = new BandwidthLimiter(1000);
+    limiter.hasTokens(10000);
+    limiter.consume(2000, 10000);
+
+    limiter.setBytesPerSecond(2000, 10000);
+    assertEquals(limiter.getBytesPerSecond(), 2000.0);
+    assertEquals(limiter.getDelay(10000), 501.0);
+
+    // Lowering the rate also lowers what the bucket can hold
+    BandwidthLimiter idle = new BandwidthLimiter(1000);
+    idle.hasTokens(10000);
+    idle.setBytesPerSecond(100, 10000);
+    assertEquals(idle.consume(200, 10000), 1001.0);
+  }
+
+  @Test
+  public void pacesRequestsToAboutASecondsWorthOfBytes() {
+    assertEquals(new BandwidthLimiter(1024 * 1024).getMaxRequestSize(), 1024.0 * 1024);
+    assertEquals(new BandwidthLimiter(1000).getMaxRequestSize(), 64.0 * 1024);
+  }
+}
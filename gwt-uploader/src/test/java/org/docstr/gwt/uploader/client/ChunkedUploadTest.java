@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class ChunkedUploadTest {
+
+  @Test
+  public void splitsTheFileIntoConsecutiveChunks() {
+    ChunkedUpload upload = new ChunkedUpload(null, 2500, "id");
+
+    assertEquals(upload.getNextOffset(), 0.0);
+    assertEquals(upload.getNextLength(1000), 1000.0);
+    assertEquals(upload.nextPart(1000), 0);
+    assertEquals(upload.getNextOffset(), 1000.0);
+    assertEquals(upload.nextPart(upload.getNextLength(1000)), 1);
+    assertEquals(upload.getNextOffset(), 2000.0);
+    // The final chunk only contains what's left of the file
+    assertEquals(upload.getNextLength(1000), 500.0);
+    assertEquals(upload.nextPart(500), 2);
+    assertFalse(upload.hasMoreChunks());
+    assertEquals(upload.getPartCount(), 3);
+  }
+
+  @Test
+  public void completesOnceEveryChunkIsAcknowledged() {
+    ChunkedUpload upload = new ChunkedUpload(null, 2000, "id");
+    upload.nextPart(1000);
+    upload.nextPart(1000);
+
+    // Chunks may be accepted out of order
+    upload.acknowledge(1);
+    assertFalse(upload.isComplete());
+    assertEquals(upload.getBytesUploaded(), 1000.0);
+    upload.acknowledge(0);
+    assertTrue(upload.isComplete());
+    assertEquals(upload.getBytesUploaded(), 2000.0);
+  }
+
+  @Test
+  public void acknowledgingAChunkTwiceOnlyCountsItOnce() {
+    ChunkedUpload upload = new ChunkedUpload(null, 2000, "id");
+    upload.nextPart(1000);
+    upload.acknowledge(0);
+    upload.acknowledge(0);
+    assertEquals(upload.getBytesUploaded(), 1000.0);
+    assertFalse(upload.isComplete());
+  }
+
+  @Test
+  public void countsTheBytesOfChunksInFlight() {
+    ChunkedUpload upload = new ChunkedUpload(null, 3000, "id");
+    upload.nextPart(1000);
+    upload.nextPart(1000);
+    upload.acknowledge(0);
+    upload.setBytesLoaded(1, 250);
+    assertEquals(upload.getBytesUploaded(), 1250.0);
+  }
+
+  @Test
+  public void resendsOnlyTheInterruptedChunksAfterAnAbort() {
+    ChunkedUpload upload = new ChunkedUpload(null, 4500, "id");
+    upload.nextPart(1000);
+    upload.nextPart(1000);
+    upload.nextPart(1000);
+    upload.acknowledge(1);
+    upload.setBytesLoaded(2, 400);
+
+    upload.abort();
+
+    // The bytes of the aborted chunks are no longer counted, but the accepted chunk is kept
+    assertEquals(upload.getBytesUploaded(), 1000.0);
+    assertEquals(upload.getUploadId(), "id");
+    assertTrue(upload.hasMoreChunks());
+
+    // The interrupted chunks are handed out again first, with their original part and range
+    assertEquals(upload.getNextOffset(), 0.0);
+    assertEquals(upload.getNextLength(5000), 1000.0);
+    assertEquals(upload.nextPart(1000), 0);
+    assertEquals(upload.getNextOffset(), 2000.0);
+    assertEquals(upload.getNextLength(300), 1000.0);
+    assertEquals(upload.nextPart(1000), 2);
+
+    // Followed by the rest of the file
+    assertEquals(upload.getNextOffset(), 3000.0);
+    assertEquals(upload.getNextLength(2000), 1500.0);
+    assertEquals(upload.nextPart(1500), 3);
+    assertFalse(upload.hasMoreChunks());
+
+    upload.acknowledge(0);
+    upload.acknowledge(2);
+    upload.acknowledge(3);
+    assertTrue(upload.isComplete());
+    assertEquals(upload.getPartCount(), 4);
+  }
+
+  @Test
+  public void abortingAfterEveryChunkWasAcceptedLeavesNothingToResend() {
+    ChunkedUpload upload = new ChunkedUpload(null, 1000, "id");
+    upload.nextPart(1000);
+    upload.acknowledge(0);
+
+    upload.abort();
+
+    assertFalse(upload.hasMoreChunks());
+    assertTrue(upload.isComplete());
+  }
+
+  private static final double MB = 1024 * 1024;
+
+  @Test
+  public void usesTheChunkSizeForObjectStorageParts() {
+    assertEquals(ChunkedUpload.getObjectStoragePartSize(100 * MB, 8 * MB), 8 * MB);
+    assertEquals(ChunkedUpload.getPartCount(100 * MB, 8 * MB), 13);
+  }
+
+  @Test
+  public void keepsObjectStoragePartsAboveTheMinimumSize() {
+    assertEquals(ChunkedUpload.getObjectStoragePartSize(100 * MB, 0), 5 * MB);
+    assertEquals(ChunkedUpload.getObjectStoragePartSize(100 * MB, MB), 5 * MB);
+    assertEquals(ChunkedUpload.getObjectStoragePartSize(MB, 0), 5 * MB);
+    assertEquals(ChunkedUpload.getPartCount(MB, 5 * MB), 1);
+    assertEquals(ChunkedUpload.getPartCount(0, 5 * MB), 1);
+  }
+
+  @Test
+  public void growsObjectStoragePartsToStayWithinTheMaximumPartCount() {
+    // 100 GB doesn't fit into 10,000 parts of 5 MB
+    double size = 100 * 1024 * MB;
+    double partSize = ChunkedUpload.getObjectStoragePartSize(size, 0);
+    assertEquals(partSize, Math.ceil(size / 10000));
+    assertEquals(ChunkedUpload.getPartCount(size, partSize), 10000);
+    assertEquals(ChunkedUpload.getPartCount(size + 1, ChunkedUpload.getObjectStoragePartSize(
+        size + 1, 0)), 10000);
+  }
+
+  @Test
+  public void resendsTheFailedPartWithItsOriginalNumberAfterAbortingTheOthers() {
+    double partSize = ChunkedUpload.getObjectStoragePartSize(12 * MB, 0);
+    ChunkedUpload upload = new ChunkedUpload(null, 12 * MB, "upload");
+    for (int i = 0; i < 3; i++) {
+      double length = upload.getNextLength(partSize);
+      assertEquals(upload.nextPart(length), i);
+    }
+    assertFalse(upload.hasMoreChunks());
+
+    // The second part fails while the other two are still in flight, then the first one is
+    // accepted before the abort reaches it
+    upload.removeRequest(1);
+    upload.acknowledge(0);
+    upload.abort();
+    assertEquals(upload.getRequestsInFlight(), 0);
+    assertFalse(upload.isComplete());
+
+    // Only the parts that weren't accepted are sent again, keeping the presigned part numbers
+    assertEquals(upload.getNextOffset(), 5 * MB);
+    assertEquals(upload.nextPart(upload.getNextLength(partSize)), 1);
+    assertEquals(upload.getNextOffset(), 10 * MB);
+    assertEquals(upload.getNextLength(partSize), 2 * MB);
+    assertEquals(upload.nextPart(2 * MB), 2);
+    assertFalse(upload.hasMoreChunks());
+
+    upload.acknowledge(1);
+    upload.acknowledge(2);
+    assertTrue(upload.isComplete());
+    assertEquals(upload.getPartCount(), ChunkedUpload.getPartCount(12 * MB, partSize));
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class ConcurrencyControllerTest {
+
+  private static final double START = 10000;
+
+  private static ConcurrencyController createController(int maxConcurrency) {
+    ConcurrencyController controller = new ConcurrencyController(maxConcurrency);
+    // The first progress event starts the first sample period
+    controller.onProgress(0, 100, START, true);
+    return controller;
+  }
+
+  /**
+   * Report steady progress for a sample period at the given throughput (bytes per second),
+   * returning whether the concurrency was increased at the end of it.
+   */
+  private static boolean samplePeriod(ConcurrencyController controller, int period,
+                                      double throughput, boolean saturated) {
+    boolean increased = false;
+    for (int time = 100; time <= 2000; time += 100) {
+      increased |= controller.onProgress(throughput / 10, 100, START + period * 2000 + time,
+                                         saturated);
+    }
+    return increased;
+  }
+
+  @Test
+  public void growsWhileTheThroughputKeepsImproving() {
+    ConcurrencyController controller = createController(4);
+    assertEquals(controller.getConcurrency(), 1);
+
+    assertTrue(samplePeriod(controller, 0, 1000, true));
+    assertEquals(controller.getConcurrency(), 2);
+    assertTrue(samplePeriod(controller, 1, 2000, true));
+    assertEquals(controller.getConcurrency(), 3);
+
+    // No meaningful improvement
+    assertFalse(samplePeriod(controller, 2, 2020, true));
+    assertEquals(controller.getConcurrency(), 3);
+  }
+
+  @Test
+  public void onlyGrowsWhileEverySlotIsInUse() {
+    ConcurrencyController controller = createController(4);
+    assertFalse(samplePeriod(controller, 0, 1000, false));
+    assertEquals(controller.getConcurrency(), 1);
+  }
+
+  @Test
+  public void neverGrowsBeyondTheMaximum() {
+    ConcurrencyController controller = createController(2);
+    samplePeriod(controller, 0, 1000, true);
+    assertFalse(samplePeriod(controller, 1, 4000, true));
+    assertEquals(controller.getConcurrency(), 2);
+  }
+
+  @Test
+  public void halvesOnCongestionOncePerSamplePeriod() {
+    ConcurrencyController controller = createController(8);
+    for (int i = 0; i < 5; i++) {
+      samplePeriod(controller, i, 1000 * (i + 1), true);
+    }
+    assertEquals(controller.getConcurrency(), 6);
+
+    controller.onCongestion(START + 10000);
+    assertEquals(controller.getConcurrency(), 3);
+    controller.onCongestion(START + 11000);
+    assertEquals(controller.getConcurrency(), 3);
+    controller.onCongestion(START + 12000);
+    assertEquals(controller.getConcurrency(), 1);
+    controller.onCongestion(START + 14000);
+    assertEquals(controller.getConcurrency(), 1);
+  }
+
+  @Test
+  public void treatsAStallAsCongestion() {
+    ConcurrencyController controller = createController(4);
+    samplePeriod(controller, 0, 1000, true);
+    samplePeriod(controller, 1, 2000, true);
+    assertEquals(controller.getConcurrency(), 3);
+
+    // Progress events usually arrive every 100ms, so a five second gap is a stall
+    controller.onProgress(100, 5000, START + 9000, true);
+    assertEquals(controller.getConcurrency(), 1);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.docstr.gwt.uploader.client.events.UploadErrorEvent.ErrorCode;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class ExponentialBackoffRetryPolicyTest {
+
+  private static ExponentialBackoffRetryPolicy withoutJitter() {
+    return new ExponentialBackoffRetryPolicy().setJitter(0);
+  }
+
+  @Test
+  public void doublesTheDelayAfterEachAttempt() {
+    ExponentialBackoffRetryPolicy policy = withoutJitter();
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.IO_ERROR, 0), 1000);
+    assertEquals(policy.getRetryDelay(null, 2, ErrorCode.IO_ERROR, 0), 2000);
+    assertEquals(policy.getRetryDelay(null, 3, ErrorCode.IO_ERROR, 0), 4000);
+    assertEquals(policy.getRetryDelay(null, 4, ErrorCode.IO_ERROR, 0), 8000);
+  }
+
+  @Test
+  public void capsTheDelay() {
+    ExponentialBackoffRetryPolicy policy = withoutJitter().setMaxAttempts(20).setMaxDelay(5000);
+    assertEquals(policy.getRetryDelay(null, 3, ErrorCode.IO_ERROR, 0), 4000);
+    assertEquals(policy.getRetryDelay(null, 4, ErrorCode.IO_ERROR, 0), 5000);
+    assertEquals(policy.getRetryDelay(null, 15, ErrorCode.IO_ERROR, 0), 5000);
+  }
+
+  @Test
+  public void givesUpAfterTheMaximumNumberOfAttempts() {
+    ExponentialBackoffRetryPolicy policy = withoutJitter().setMaxAttempts(3);
+    assertEquals(policy.getRetryDelay(null, 2, ErrorCode.UPLOAD_FAILED, 0), 2000);
+    assertEquals(policy.getRetryDelay(null, 3, ErrorCode.UPLOAD_FAILED, 0), -1);
+  }
+
+  @Test
+  public void onlyRetriesTransientFailures() {
+    ExponentialBackoffRetryPolicy policy = withoutJitter();
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 500), 1000);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 503), 1000);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 429), 1000);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 408), 1000);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 0), 1000);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 400), -1);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.HTTP_ERROR, 404), -1);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.FILE_CANCELLED, 0), -1);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.FILE_VALIDATION_FAILED, 0), -1);
+    assertEquals(policy.getRetryDelay(null, 1, ErrorCode.UPLOAD_LIMIT_EXCEEDED, 0), -1);
+  }
+
+  @Test
+  public void takesARandomAmountOffTheDelay() {
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy().setJitter(0.5);
+    for (int i = 0; i < 1000; i++) {
+      int delay = policy.getRetryDelay(null, 3, ErrorCode.IO_ERROR, 0);
+      assertTrue(delay >= 2000 && delay <= 4000, "Unexpected delay " + delay);
+    }
+  }
+}
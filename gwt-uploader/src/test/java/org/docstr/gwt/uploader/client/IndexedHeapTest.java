@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class IndexedHeapTest {
+
+  private static final class Entry {
+    private final int sequence;
+    private int priority;
+    private int index = -1;
+
+    Entry(int sequence, int priority) {
+      this.sequence = sequence;
+      this.priority = priority;
+    }
+  }
+
+  // Higher priorities first, then in the order the entries were added
+  private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      if (a.priority != b.priority) {
+        return a.priority > b.priority ? -1 : 1;
+      }
+      return a.sequence < b.sequence ? -1 : (a.sequence > b.sequence ? 1 : 0);
+    }
+  };
+
+  private static IndexedHeap<Entry> createHeap() {
+    return new IndexedHeap<Entry>(ORDER) {
+      @Override
+      protected int getIndex(Entry entry) {
+        return entry.index;
+      }
+
+      @Override
+      protected void setIndex(Entry entry, int index) {
+        entry.index = index;
+      }
+    };
+  }
+
+  /**
+   * The way the next file used to be picked, by scanning every file waiting to be uploaded.
+   */
+  private static Entry linearScan(Iterable<Entry> entries) {
+    Entry next = null;
+    for (Entry entry : entries) {
+      if (next == null || ORDER.compare(entry, next) < 0) {
+        next = entry;
+      }
+    }
+    return next;
+  }
+
+  private static Entry pop(IndexedHeap<Entry> heap) {
+    Entry entry = heap.peek();
+    assertTrue(heap.remove(entry));
+    return entry;
+  }
+
+  @Test
+  public void keepsEntriesThatCompareEqualInTheOrderTheyWereAdded() {
+    IndexedHeap<Entry> heap = createHeap();
+    Entry first = new Entry(0, 0);
+    Entry second = new Entry(1, 0);
+    Entry urgent = new Entry(2, 5);
+    heap.add(first);
+    heap.add(second);
+    heap.add(urgent);
+
+    assertSame(pop(heap), urgent);
+    assertSame(pop(heap), first);
+    assertSame(pop(heap), second);
+    assertNull(heap.peek());
+  }
+
+  @Test
+  public void ignoresEntriesWhichAreNotInTheHeap() {
+    IndexedHeap<Entry> heap = createHeap();
+    Entry queued = new Entry(0, 0);
+    Entry other = new Entry(1, 0);
+    heap.add(queued);
+
+    assertFalse(heap.remove(other));
+    heap.reorder(other);
+    assertTrue(heap.remove(queued));
+    assertFalse(heap.remove(queued));
+    assertTrue(heap.isEmpty());
+  }
+
+  @Test
+  public void matchesTheLinearScanForOneHundredThousandEntries() {
+    Random random = new Random(42);
+    IndexedHeap<Entry> heap = createHeap();
+    ArrayList<Entry> entries = new ArrayList<Entry>();
+    LinkedHashSet<Entry> waiting = new LinkedHashSet<Entry>();
+    for (int i = 0; i < 100000; i++) {
+      Entry entry = new Entry(i, random.nextInt(100));
+      entries.add(entry);
+      waiting.add(entry);
+      heap.add(entry);
+    }
+
+    // Reprioritise a quarter of the entries
+    for (int i = 0; i < 25000; i++) {
+      Entry entry = entries.get(random.nextInt(entries.size()));
+      entry.priority = random.nextInt(100);
+      heap.reorder(entry);
+    }
+
+    // Remove another quarter, as if they had been cancelled
+    Collections.shuffle(entries, random);
+    for (Entry entry : entries.subList(0, 25000)) {
+      assertEquals(heap.remove(entry), waiting.remove(entry));
+    }
+    assertEquals(heap.size(), waiting.size());
+
+    // Popping everything that's left has to produce the entries in sorted order, with the linear
+    // scan agreeing on the next entry along the way (checked periodically to keep the test fast)
+    ArrayList<Entry> expected = new ArrayList<Entry>(waiting);
+    Collections.sort(expected, ORDER);
+    for (int i = 0; i < expected.size(); i++) {
+      if (i % 100 == 0) {
+        assertSame(heap.peek(), linearScan(waiting));
+      }
+      Entry entry = pop(heap);
+      assertSame(entry, expected.get(i));
+      waiting.remove(entry);
+    }
+    assertTrue(heap.isEmpty());
+  }
+
+  @Test
+  public void reordersEverythingWhenTheOrderChanges() {
+    IndexedHeap<Entry> heap = createHeap();
+    for (int i = 0; i < 10; i++) {
+      heap.add(new Entry(i, i));
+    }
+    heap.setOrder(new Comparator<Entry>() {
+      @Override
+      public int compare(Entry a, Entry b) {
+        return a.sequence - b.sequence;
+      }
+    });
+    for (int i = 0; i < 10; i++) {
+      assertEquals(pop(heap).sequence, i);
+    }
+  }
+}
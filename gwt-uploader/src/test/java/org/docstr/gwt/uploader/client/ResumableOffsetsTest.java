@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class ResumableOffsetsTest {
+
+  @Test
+  public void parsesTheReportedOffset() {
+    assertEquals(ResumableOffsets.parseOffset("0"), 0.0);
+    assertEquals(ResumableOffsets.parseOffset(" 1048576 "), 1048576.0);
+  }
+
+  @Test
+  public void rejectsMissingOrInvalidOffsets() {
+    assertEquals(ResumableOffsets.parseOffset(null), -1.0);
+    assertEquals(ResumableOffsets.parseOffset(""), -1.0);
+    assertEquals(ResumableOffsets.parseOffset("abc"), -1.0);
+    assertEquals(ResumableOffsets.parseOffset("-5"), -1.0);
+  }
+
+  @Test
+  public void usesTheOffsetReportedByTheServer() {
+    // The server may have stored less than was sent
+    assertEquals(ResumableOffsets.getConfirmedOffset("1500", 1000, 1000), 1500.0);
+    assertEquals(ResumableOffsets.getConfirmedOffset("2000", 1000, 1000), 2000.0);
+  }
+
+  @Test
+  public void carriesOnAfterTheSentChunkWhenTheOffsetIsMissing() {
+    assertEquals(ResumableOffsets.getConfirmedOffset(null, 0, 1000), 1000.0);
+    assertEquals(ResumableOffsets.getConfirmedOffset(null, 1000, 1000), 2000.0);
+    assertEquals(ResumableOffsets.getConfirmedOffset("", 3000, 500), 3500.0);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class SpeedStatisticsTest {
+
+  private static final double DELTA = 1e-6;
+
+  @Test
+  public void averagesTheMeasurements() {
+    SpeedStatistics statistics = new SpeedStatistics(16, 0);
+    assertEquals(statistics.getMovingAverage(), 0.0);
+    statistics.add(100);
+    statistics.add(200);
+    statistics.add(300);
+    assertEquals(statistics.getMovingAverage(), 200.0, DELTA);
+  }
+
+  @Test
+  public void leavesOutliersOutOfTheAverage() {
+    SpeedStatistics statistics = new SpeedStatistics(16, 0);
+    for (int i = 0; i < 8; i++) {
+      statistics.add(i % 2 == 0 ? 90 : 110);
+    }
+    assertEquals(statistics.getMovingAverage(), 100.0, DELTA);
+
+    // Within two standard deviations (of 10) of the mean
+    statistics.add(115);
+    assertEquals(statistics.getMovingAverage(), 915.0 / 9, DELTA);
+
+    // Far outside of them
+    statistics.add(1000);
+    assertEquals(statistics.getMovingAverage(), 915.0 / 9, DELTA);
+  }
+
+  @Test
+  public void acceptsEveryMeasurementUntilEnoughHaveBeenCollected() {
+    SpeedStatistics statistics = new SpeedStatistics(16, 0);
+    statistics.add(100);
+    statistics.add(100);
+    statistics.add(10000);
+    assertEquals(statistics.getMovingAverage(), 10200.0 / 3, DELTA);
+  }
+
+  @Test
+  public void tracksTheStandardDeviationOfTheSlidingWindow() {
+    Random random = new Random(7);
+    int windowSize = 32;
+    SpeedStatistics statistics = new SpeedStatistics(windowSize, 0);
+    double[] values = new double[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = 1000 + random.nextGaussian() * 100 + (i > 500 ? 500 : 0);
+      statistics.add(values[i]);
+
+      // Compare the incremental result against the window computed from scratch
+      int from = Math.max(0, i + 1 - windowSize);
+      double sum = 0;
+      for (int j = from; j <= i; j++) {
+        sum += values[j];
+      }
+      double mean = sum / (i + 1 - from);
+      double squares = 0;
+      for (int j = from; j <= i; j++) {
+        squares += (values[j] - mean) * (values[j] - mean);
+      }
+      assertEquals(statistics.getStandardDeviation(), Math.sqrt(squares / (i + 1 - from)), 1e-3);
+    }
+  }
+
+  @Test
+  public void followsAChangeInSpeedOnceTheWindowHasMovedOn() {
+    SpeedStatistics statistics = new SpeedStatistics(8, 0);
+    for (int i = 0; i < 8; i++) {
+      statistics.add(i % 2 == 0 ? 95 : 105);
+    }
+    for (int i = 0; i < 16; i++) {
+      statistics.add(i % 2 == 0 ? 495 : 505);
+    }
+    assertEquals(statistics.getMovingAverage(), 500.0, DELTA);
+  }
+
+  @Test
+  public void usesAnExponentiallyWeightedAverageWhenASmoothingFactorIsSet() {
+    SpeedStatistics statistics = new SpeedStatistics(16, 0.5);
+    statistics.add(100);
+    assertEquals(statistics.getMovingAverage(), 100.0, DELTA);
+    statistics.add(200);
+    assertEquals(statistics.getMovingAverage(), 150.0, DELTA);
+    statistics.add(50);
+    assertEquals(statistics.getMovingAverage(), 100.0, DELTA);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Document Node Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.docstr.gwt.uploader.client;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author delight.wjk@gmail.com
+ */
+public class TarFormatTest {
+
+  @Test
+  public void padsToWholeBlocks() {
+    assertEquals(TarFormat.getPadding(0), 0.0);
+    assertEquals(TarFormat.getPadding(1), 511.0);
+    assertEquals(TarFormat.getPadding(512), 0.0);
+    assertEquals(TarFormat.getPadding(513), 511.0);
+    assertEquals(TarFormat.getPadding(TarFormat.MAX_USTAR_SIZE + 100), 412.0);
+  }
+
+  @Test
+  public void formatsOctalFields() {
+    assertEquals(TarFormat.toOctal(0, 12), "00000000000\0");
+    assertEquals(TarFormat.toOctal(1024, 12), "00000002000\0");
+    assertEquals(TarFormat.toOctal(1700000000.75, 12), "14524770400\0");
+    assertEquals(TarFormat.toOctal(TarFormat.MAX_USTAR_SIZE - 1, 12), "77777777777\0");
+    assertEquals(TarFormat.toOctal(4100, 7), "010004\0");
+  }
+
+  @Test
+  public void usesExtendedHeadersForLongOrNonAsciiPaths() {
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      path.append('a');
+    }
+    assertFalse(TarFormat.needsExtendedPath("photos/2024/beach.jpg"));
+    assertFalse(TarFormat.needsExtendedPath(path.toString()));
+    assertTrue(TarFormat.needsExtendedPath(path.append('a').toString()));
+    assertTrue(TarFormat.needsExtendedPath("photos/\u00e9t\u00e9.jpg"));
+  }
+
+  @Test
+  public void usesExtendedHeadersForFilesOfEightGigabytesOrMore() {
+    assertFalse(TarFormat.needsExtendedSize(TarFormat.MAX_USTAR_SIZE - 1));
+    assertTrue(TarFormat.needsExtendedSize(TarFormat.MAX_USTAR_SIZE));
+  }
+
+  @Test
+  public void countsUtf8Bytes() {
+    String[] values = {"", "abc", "\u00e9t\u00e9", "\u65e5\u672c", "\ud83d\ude00 smile"};
+    for (String value : values) {
+      assertEquals(TarFormat.getUtf8Length(value),
+                   value.getBytes(StandardCharsets.UTF_8).length, value);
+    }
+    // TextEncoder replaces a lone surrogate with U+FFFD, which takes up three bytes
+    assertEquals(TarFormat.getUtf8Length("\ud800"), 3);
+  }
+
+  @Test
+  public void includesTheDigitsOfTheLengthInThePaxRecordLength() {
+    assertEquals(TarFormat.createRecord("path", "a"), "9 path=a\n");
+    assertRecordLength(TarFormat.createRecord("path", "photos/\u00e9t\u00e9.jpg"));
+
+    // Every value length across the points where the length gains a digit
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 1100; i++) {
+      assertRecordLength(TarFormat.createRecord("path", value.toString()));
+      value.append(i % 2 == 0 ? 'x' : '\u00e9');
+    }
+  }
+
+  private static void assertRecordLength(String record) {
+    int length = Integer.parseInt(record.substring(0, record.indexOf(' ')));
+    assertEquals(record.getBytes(StandardCharsets.UTF_8).length, length, record);
+  }
+}